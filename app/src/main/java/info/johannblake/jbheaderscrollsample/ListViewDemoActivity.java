@@ -6,9 +6,8 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
-import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
-import android.widget.RelativeLayout;
+import android.widget.ListView;
 import android.support.v7.widget.Toolbar;
 
 import java.util.ArrayList;
@@ -20,12 +19,13 @@ import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScroll;
 public class ListViewDemoActivity extends Activity
 {
   private final String LOG_TAG = "ListViewDemoActivity";
+  private final static String STATE_HEADER_SCROLL = "jbHeaderScroll";
 
   private JBHeaderScroll jbHeaderScroll;
 
 
   @Override
-  protected void onCreate(Bundle savedInstanceState)
+  protected void onCreate(final Bundle savedInstanceState)
   {
     try
     {
@@ -33,7 +33,7 @@ public class ListViewDemoActivity extends Activity
       setContentView(R.layout.activity_listview_demo);
 
       // Fill the listview with some data.
-      final CustomListView listview = (CustomListView) findViewById(R.id.listview);
+      final ListView listview = (ListView) findViewById(R.id.listview);
       List<String> items = new ArrayList<>();
 
       for (int i = 0; i < 100; i++)
@@ -45,67 +45,40 @@ public class ListViewDemoActivity extends Activity
       // Setup a JBHeaderScroll.
       final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
 
-      toolbar.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+      toolbar.bringToFront(); // Necessary if your scroller is rendered last.
+
+      // The listview is laid out behind the toolbar and moved with translationY only, so scrolling never requires
+      // a layout pass. JBHeaderScroll moves it below the toolbar once the toolbar has been laid out.
+      jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
+      jbHeaderScroll.setRepositionMode(JBHeaderScroll.REPOSITION_MODE_TRANSLATION);
+      jbHeaderScroll.setPlaceScrollersBelowHeader(true);
+
+      // Release the scroller and its callback when the activity is destroyed.
+      jbHeaderScroll.bindToActivity(this);
+
+      jbHeaderScroll.registerScroller(listview, new JBHeaderScroll.IJBHeaderScroll()
       {
         @Override
-        public void onGlobalLayout()
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+        {
+          // JBHeaderScroll has already moved the listview. Nothing to do here.
+        }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
         {
-          try
-          {
-            listview.setY(toolbar.getHeight());
-            jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
-            jbHeaderScroll.registerScroller(listview, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  // When the user releases their finger while scrolling very slowly, the jitter from their finger
-                  // may result in a slight amount of scrolling downward. This can result in a side effect of the
-                  // header animating down when it might have animated up depending on its current position. To
-                  // avoid this, avoid repositioning the scroller for small amounts of scrolling. You may need to
-                  // play with this value.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.MATCH_PARENT);
-                    layoutParams.setMargins(0, (int) top, 0, 0);
-                    listview.setLayoutParams(layoutParams);
-                    toolbar.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            listview.setJBHeaderRef(jbHeaderScroll);
-            toolbar.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-          }
-          catch (Exception ex)
-          {
-            Log.e(LOG_TAG, "onGlobalLayout: " + ex.toString());
-          }
         }
       });
+
+      // Put the toolbar and the listview back where they were before the activity was recreated.
+      if (savedInstanceState != null)
+        jbHeaderScroll.onRestoreInstanceState(savedInstanceState.getParcelable(STATE_HEADER_SCROLL));
     }
     catch (Exception ex)
     {
@@ -122,6 +95,15 @@ public class ListViewDemoActivity extends Activity
     return super.dispatchTouchEvent(ev);
   }
 
+  @Override
+  protected void onSaveInstanceState(Bundle outState)
+  {
+    super.onSaveInstanceState(outState);
+
+    if (this.jbHeaderScroll != null)
+      outState.putParcelable(STATE_HEADER_SCROLL, this.jbHeaderScroll.onSaveInstanceState());
+  }
+
   @Override
   public boolean onCreateOptionsMenu(Menu menu)
   {
@@ -7,21 +7,25 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
-import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
 import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.RelativeLayout;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScroll;
+import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScrollGroup;
 
 
 public class NestedHeadersDemoActivity extends Activity
 {
   private final String LOG_TAG = "NestedHeaders";
+  private final static String STATE_OUTER_HEADER_SCROLL = "outerHeaderScroll";
+  private final static String STATE_INNER_HEADER_SCROLL = "innerHeaderScroll";
 
+  private JBHeaderScrollGroup jbHeaderScrollGroup;
   private JBHeaderScroll jbHeaderScrollOuter;
   private JBHeaderScroll jbHeaderScrollInner;
 
@@ -35,7 +39,7 @@ public class NestedHeadersDemoActivity extends Activity
       setContentView(R.layout.activity_nestedheaders_demo);
 
       // Fill the listview1 with some data.
-      final CustomListView listview1 = (CustomListView) findViewById(R.id.listview1);
+      final ListView listview1 = (ListView) findViewById(R.id.listview1);
       List<String> items1 = new ArrayList<>();
 
       for (int i = 0; i < 100; i++)
@@ -45,7 +49,7 @@ public class NestedHeadersDemoActivity extends Activity
       listview1.setAdapter(arrayAdapter1);
 
       // Fill the listview2 with some data.
-      final CustomListView listview2 = (CustomListView) findViewById(R.id.listview2);
+      final ListView listview2 = (ListView) findViewById(R.id.listview2);
       List<String> items2 = new ArrayList<>();
 
       for (int i = 0; i < 100; i++)
@@ -54,163 +58,126 @@ public class NestedHeadersDemoActivity extends Activity
       ArrayAdapter<String> arrayAdapter2 = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, items2);
       listview2.setAdapter(arrayAdapter2);
 
-      // Setup a JBHeaderScroll.
+      // Setup a JBHeaderScrollGroup. The toolbar is the outer header and llHeader2, which is located inside
+      // customScroller1, is the inner header.
       final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
 
-      toolbar.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+      // Both panes are laid out behind the toolbar and listview2 behind llHeader2. JBHeaderScroll moves them
+      // below their headers through onReposition once the headers have been laid out.
+      jbHeaderScrollGroup = new JBHeaderScrollGroup(this);
+      jbHeaderScrollOuter = jbHeaderScrollGroup.addHeader(toolbar, 0);
+      jbHeaderScrollOuter.setPlaceScrollersBelowHeader(true);
+
+      jbHeaderScrollOuter.registerScroller(listview1, new JBHeaderScroll.IJBHeaderScroll()
+      {
+        @Override
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+        {
+        }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
+        {
+        }
+      });
+
+
+      // Setup the right listview
+      final RelativeLayout customScroller1 = (RelativeLayout) findViewById(R.id.customScroller1);
+
+      jbHeaderScrollOuter.registerScroller(customScroller1, new JBHeaderScroll.IJBHeaderScroll()
       {
         @Override
-        public void onGlobalLayout()
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+        {
+        }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
+        {
+        }
+      });
+
+      // Both panes below the toolbar are repositioned together, so their layout is only requested and the
+      // toolbar only brought to the front once per move.
+      jbHeaderScrollOuter.setBatchRepositionListener(new JBHeaderScroll.IJBHeaderScrollBatch()
+      {
+        @Override
+        public void onReposition(float[] tops, int count, boolean scrollingUp, float scrollDelta)
         {
           try
           {
-            listview1.setY(toolbar.getHeight());
-            jbHeaderScrollOuter = new JBHeaderScroll(toolbar, 0);
-
-            jbHeaderScrollOuter.registerScroller(listview1, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  // When the user releases their finger while scrolling very slowly, the jitter from their finger
-                  // may result in a slight amount of scrolling downward. This can result in a side effect of the
-                  // header animating down when it might have animated up depending on its current position. To
-                  // avoid this, avoid repositioning the scroller for small amounts of scrolling. You may need to
-                  // play with this value.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.MATCH_PARENT, 1.0f);
-                    listview1.setY(top);
-                    listview1.setLayoutParams(layoutParams);
-                    toolbar.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            listview1.setJBHeaderRef(jbHeaderScrollOuter);
-
-
-            // Setup the right listview
-            final CustomScroller customScroller1 = (CustomScroller) findViewById(R.id.customScroller1);
-            customScroller1.setY(toolbar.getHeight());
-
-            jbHeaderScrollOuter.registerScroller(customScroller1, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.MATCH_PARENT, 1f);
-                    customScroller1.setY(top);
-                    customScroller1.setLayoutParams(layoutParams);
-                    toolbar.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            customScroller1.setJBHeaderRef(jbHeaderScrollOuter);
-
-
-            // Setup the scroller for the nested header.
-            final LinearLayout llHeader2 = (LinearLayout) findViewById(R.id.llHeader2);
-
-            listview2.setY(llHeader2.getHeight());
-            jbHeaderScrollInner = new JBHeaderScroll(llHeader2, 0);
-
-            jbHeaderScrollInner.registerScroller(listview2, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT, RelativeLayout.LayoutParams.MATCH_PARENT);
-                    listview2.setY(top);
-                    listview2.setLayoutParams(layoutParams);
-                    llHeader2.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            listview2.setJBHeaderRef(jbHeaderScrollInner);
-
-
-            toolbar.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+            // The tops are indexed in the order the scrollers were registered.
+            listview1.setY(tops[0]);
+            customScroller1.setY(tops[1]);
+            toolbar.bringToFront(); // Necessary if your scrollers are rendered last.
           }
           catch (Exception ex)
           {
-            Log.e(LOG_TAG, "onGlobalLayout: " + ex.toString());
+            Log.e(LOG_TAG, "onReposition: " + ex.toString());
           }
         }
       });
+
+
+      // Setup the scroller for the nested header.
+      final LinearLayout llHeader2 = (LinearLayout) findViewById(R.id.llHeader2);
+
+      jbHeaderScrollInner = jbHeaderScrollGroup.addHeader(llHeader2, 0, jbHeaderScrollOuter);
+      jbHeaderScrollInner.setPlaceScrollersBelowHeader(true);
+
+      jbHeaderScrollInner.registerScroller(listview2, new JBHeaderScroll.IJBHeaderScroll()
+      {
+        @Override
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+        {
+          try
+          {
+            // The list's view top edge must be adjusted during scrolling.
+            // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
+            // container of the listview.
+
+            RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT, RelativeLayout.LayoutParams.MATCH_PARENT);
+            listview2.setY(top);
+            listview2.setLayoutParams(layoutParams);
+            llHeader2.bringToFront(); // Necessary if your scroller is rendered last.
+          }
+          catch (Exception ex)
+          {
+            Log.e(LOG_TAG, "onReposition: " + ex.toString());
+          }
+        }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
+        {
+        }
+      });
+
+      // Put the headers and the scrollers back where they were before the activity was recreated.
+      if (savedInstanceState != null)
+      {
+        jbHeaderScrollOuter.onRestoreInstanceState(savedInstanceState.getParcelable(STATE_OUTER_HEADER_SCROLL));
+        jbHeaderScrollInner.onRestoreInstanceState(savedInstanceState.getParcelable(STATE_INNER_HEADER_SCROLL));
+      }
     }
     catch (Exception ex)
     {
@@ -221,13 +188,22 @@ public class NestedHeadersDemoActivity extends Activity
   @Override
   public boolean dispatchTouchEvent(MotionEvent ev)
   {
+    if (this.jbHeaderScrollGroup != null)
+      this.jbHeaderScrollGroup.onRootDispatchTouchEventListener(ev);
+
+    return super.dispatchTouchEvent(ev);
+  }
+
+  @Override
+  protected void onSaveInstanceState(Bundle outState)
+  {
+    super.onSaveInstanceState(outState);
+
     if (this.jbHeaderScrollOuter != null)
-      this.jbHeaderScrollOuter.onRootDispatchTouchEventListener(ev);
+      outState.putParcelable(STATE_OUTER_HEADER_SCROLL, this.jbHeaderScrollOuter.onSaveInstanceState());
 
     if (this.jbHeaderScrollInner != null)
-      this.jbHeaderScrollInner.onRootDispatchTouchEventListener(ev);
-
-    return super.dispatchTouchEvent(ev);
+      outState.putParcelable(STATE_INNER_HEADER_SCROLL, this.jbHeaderScrollInner.onSaveInstanceState());
   }
 
   @Override
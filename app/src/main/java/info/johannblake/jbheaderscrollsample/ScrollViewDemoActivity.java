@@ -7,9 +7,9 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
-import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
+import android.widget.ScrollView;
 import android.widget.TextView;
 
 import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScroll;
@@ -18,12 +18,13 @@ import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScroll;
 public class ScrollViewDemoActivity extends Activity
 {
   private final String LOG_TAG = "ScrollViewDemoActivity";
+  private final static String STATE_HEADER_SCROLL = "jbHeaderScroll";
 
   private JBHeaderScroll jbHeaderScroll;
 
 
   @Override
-  protected void onCreate(Bundle savedInstanceState)
+  protected void onCreate(final Bundle savedInstanceState)
   {
     try
     {
@@ -31,7 +32,7 @@ public class ScrollViewDemoActivity extends Activity
       setContentView(R.layout.activity_scrollview_demo);
 
       // Fill the scrollview with some data.
-      final CustomScrollView scrollview = (CustomScrollView) findViewById(R.id.scrollview);
+      final ScrollView scrollview = (ScrollView) findViewById(R.id.scrollview);
 
       LinearLayout llItems = new LinearLayout(this);
       llItems.setOrientation(LinearLayout.VERTICAL);
@@ -48,67 +49,45 @@ public class ScrollViewDemoActivity extends Activity
       // Setup a JBHeaderScroll.
       final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
 
-      toolbar.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+      // The scrollview is laid out below the toolbar, so JBHeaderScroll doesn't need to move it initially.
+      jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
+      jbHeaderScroll.registerScroller(scrollview, new JBHeaderScroll.IJBHeaderScroll()
       {
         @Override
-        public void onGlobalLayout()
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
         {
           try
           {
-            scrollview.setY(toolbar.getHeight());
-            jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
-            jbHeaderScroll.registerScroller(scrollview, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  // When the user releases their finger while scrolling very slowly, the jitter from their finger
-                  // may result in a slight amount of scrolling downward. This can result in a side effect of the
-                  // header animating down when it might have animated up depending on its current position. To
-                  // avoid this, avoid repositioning the scroller for small amounts of scrolling. You may need to
-                  // play with this value.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.MATCH_PARENT);
-                    layoutParams.setMargins(0, (int) top, 0, 0);
-                    scrollview.setLayoutParams(layoutParams);
-                    toolbar.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            scrollview.setJBHeaderRef(jbHeaderScroll);
-            toolbar.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+            // The list's view top edge must be adjusted during scrolling.
+            // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
+            // container of the listview.
+
+            RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.MATCH_PARENT);
+            layoutParams.setMargins(0, (int) top, 0, 0);
+            scrollview.setLayoutParams(layoutParams);
+            toolbar.bringToFront(); // Necessary if your scroller is rendered last.
           }
           catch (Exception ex)
           {
-            Log.e(LOG_TAG, "onGlobalLayout: " + ex.toString());
+            Log.e(LOG_TAG, "onReposition: " + ex.toString());
           }
         }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
+        {
+        }
       });
+
+      // Put the toolbar and the scrollview back where they were before the activity was recreated.
+      if (savedInstanceState != null)
+        jbHeaderScroll.onRestoreInstanceState(savedInstanceState.getParcelable(STATE_HEADER_SCROLL));
     }
     catch (Exception ex)
     {
@@ -125,6 +104,15 @@ public class ScrollViewDemoActivity extends Activity
     return super.dispatchTouchEvent(ev);
   }
 
+  @Override
+  protected void onSaveInstanceState(Bundle outState)
+  {
+    super.onSaveInstanceState(outState);
+
+    if (this.jbHeaderScroll != null)
+      outState.putParcelable(STATE_HEADER_SCROLL, this.jbHeaderScroll.onSaveInstanceState());
+  }
+
   @Override
   public boolean onCreateOptionsMenu(Menu menu)
   {
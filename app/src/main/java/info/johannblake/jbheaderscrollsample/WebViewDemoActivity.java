@@ -8,24 +8,24 @@ import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.MotionEvent;
-import android.view.ViewTreeObserver;
 import android.webkit.CookieManager;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.LinearLayout;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import info.johannblake.widgets.jbheaderscrolllib.JBHeaderScroll;
+import info.johannblake.widgets.jbheaderscrolllib.WebViewHeaderScrollListener;
 
 
 public class WebViewDemoActivity extends Activity
 {
   private final String LOG_TAG = "WebViewDemoActivity";
+  private final static String STATE_HEADER_SCROLL = "jbHeaderScroll";
 
   private JBHeaderScroll jbHeaderScroll;
+  private WebViewHeaderScrollListener webViewHeaderScrollListener;
 
 
   @Override
@@ -37,74 +37,47 @@ public class WebViewDemoActivity extends Activity
       setContentView(R.layout.activity_webview_demo);
 
       // Fill the scrollview with some data.
-      final CustomWebView webview = (CustomWebView) findViewById(R.id.webview);
+      final WebView webview = (WebView) findViewById(R.id.webview);
 
       setupWebView(webview);
 
       // Setup a JBHeaderScroll.
       final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
 
-      toolbar.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+      // The webview is laid out behind the toolbar and only translated while the toolbar moves. JBHeaderScroll moves
+      // it below the toolbar once the toolbar has been laid out.
+      jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
+      jbHeaderScroll.setRepositionMode(JBHeaderScroll.REPOSITION_MODE_TRANSLATION);
+      jbHeaderScroll.setPlaceScrollersBelowHeader(true);
+
+      // Release the scroller and its callback when the activity is destroyed.
+      jbHeaderScroll.bindToActivity(this);
+
+      jbHeaderScroll.registerScroller(webview, new JBHeaderScroll.IJBHeaderScroll()
       {
         @Override
-        public void onGlobalLayout()
+        public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+        {
+        }
+
+        @Override
+        public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+        {
+          return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+        }
+
+        @Override
+        public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
         {
-          try
-          {
-            webview.setY(toolbar.getHeight());
-            jbHeaderScroll = new JBHeaderScroll(toolbar, 0);
-            jbHeaderScroll.registerScroller(webview, new JBHeaderScroll.IJBHeaderScroll()
-            {
-              @Override
-              public void onReposition(float top, boolean scrollingUp, float scrollDelta)
-              {
-                try
-                {
-                  // The list's view top edge must be adjusted during scrolling.
-                  // IMPORTANT: Make sure you use the correct type of LayoutParams which is the type that applies to the parent
-                  // container of the listview.
-
-                  // When the user releases their finger while scrolling very slowly, the jitter from their finger
-                  // may result in a slight amount of scrolling downward. This can result in a side effect of the
-                  // header animating down when it might have animated up depending on its current position. To
-                  // avoid this, avoid repositioning the scroller for small amounts of scrolling. You may need to
-                  // play with this value.
-
-                  if (scrollingUp || (!scrollingUp && (scrollDelta > 5)))
-                  {
-                    RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.MATCH_PARENT);
-                    layoutParams.setMargins(0, (int) top, 0, 0);
-                    webview.setLayoutParams(layoutParams);
-                    toolbar.bringToFront(); // Necessary if your scroller is rendered last.
-                  }
-                }
-                catch (Exception ex)
-                {
-                  Log.e(LOG_TAG, "onReposition: " + ex.toString());
-                }
-              }
-
-              @Override
-              public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
-              {
-                return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
-              }
-
-              @Override
-              public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
-              {
-              }
-            });
-
-            webview.setJBHeaderRef(jbHeaderScroll);
-            toolbar.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-          }
-          catch (Exception ex)
-          {
-            Log.e(LOG_TAG, "onGlobalLayout: " + ex.toString());
-          }
         }
       });
+
+      webViewHeaderScrollListener = new WebViewHeaderScrollListener(jbHeaderScroll, webview);
+      webViewHeaderScrollListener.attach();
+
+      // Put the toolbar and the webview back where they were before the activity was recreated.
+      if (savedInstanceState != null)
+        jbHeaderScroll.onRestoreInstanceState(savedInstanceState.getParcelable(STATE_HEADER_SCROLL));
     }
     catch (Exception ex)
     {
@@ -113,7 +86,7 @@ public class WebViewDemoActivity extends Activity
   }
 
 
-  private void setupWebView(CustomWebView webview)
+  private void setupWebView(WebView webview)
   {
     try
     {
@@ -143,12 +116,22 @@ public class WebViewDemoActivity extends Activity
   }
 
   @Override
-  public boolean dispatchTouchEvent(MotionEvent ev)
+  protected void onSaveInstanceState(Bundle outState)
   {
+    super.onSaveInstanceState(outState);
+
     if (this.jbHeaderScroll != null)
-      this.jbHeaderScroll.onRootDispatchTouchEventListener(ev);
+      outState.putParcelable(STATE_HEADER_SCROLL, this.jbHeaderScroll.onSaveInstanceState());
+  }
+
+  @Override
+  protected void onDestroy()
+  {
+    // The listener is registered with the webview's view tree observer and may have a frame callback pending.
+    if (this.webViewHeaderScrollListener != null)
+      this.webViewHeaderScrollListener.detach();
 
-    return super.dispatchTouchEvent(ev);
+    super.onDestroy();
   }
 
   @Override
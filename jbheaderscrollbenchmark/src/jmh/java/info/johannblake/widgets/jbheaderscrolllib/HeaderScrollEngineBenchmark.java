@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the header scroll state machine with synthetic gestures over 1, 3 and 50 registered scrollers.
+ * <p/>
+ * Each benchmark reports the time per motion event. Run them through main, which adds JMH's GC profiler so that
+ * the number of bytes allocated per event (gc.alloc.rate.norm) is reported as well:
+ * <p/>
+ * ./gradlew jbheaderscrollbenchmark:jmhJar
+ * java -cp jbheaderscrollbenchmark/build/libs/jbheaderscrollbenchmark-jmh.jar info.johannblake.widgets.jbheaderscrolllib.HeaderScrollEngineBenchmark
+ * <p/>
+ * The same gestures sent through JBHeaderScroll.onRootDispatchTouchEventListener are measured on a device by
+ * JBHeaderScrollDispatchBenchmark in the library's androidTest sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HeaderScrollEngineBenchmark
+{
+  private final static float HEADER_HEIGHT = 168;
+  private final static int MOVES_PER_GESTURE = 100;
+  private final static float FLING_VELOCITY = -3000;
+
+  @Param({"1", "3", "50"})
+  public int scrollerCount;
+
+  private FakeHost host;
+  private HeaderScrollEngine engine;
+  private float[] dragY;
+
+
+  /**
+   * Runs all benchmarks in this class with the GC profiler.
+   */
+  public static void main(String[] args) throws RunnerException
+  {
+    Options options = new OptionsBuilder()
+        .include(HeaderScrollEngineBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(options).run();
+  }
+
+
+  @Setup
+  public void setUp()
+  {
+    this.host = new FakeHost();
+    this.engine = new HeaderScrollEngine(this.host, 150);
+    this.engine.setScrollerBounds(0, HEADER_HEIGHT);
+    this.engine.setHeaderHeight(HEADER_HEIGHT);
+
+    for (int i = 0; i < this.scrollerCount; i++)
+      this.engine.addScroller(HEADER_HEIGHT);
+
+    // A drag that moves up and down repeatedly so that both directions and both saturated header
+    // positions are exercised.
+    this.dragY = new float[MOVES_PER_GESTURE];
+
+    for (int i = 0; i < MOVES_PER_GESTURE; i++)
+      this.dragY[i] = 500 + (float) (400 * Math.sin(i / 8.0));
+
+    // Leave the header partially visible so that a release has to decide which way to snap.
+    this.engine.setHeaderY(-HEADER_HEIGHT / 3);
+  }
+
+
+  /**
+   * The finger touches a scroller and drags it without being released. This is the path that
+   * onRootDispatchTouchEventListener and onScrollSyncMotion take for every ACTION_MOVE.
+   */
+  @Benchmark
+  @OperationsPerInvocation(MOVES_PER_GESTURE + 1)
+  public void drag()
+  {
+    this.engine.setActiveScroller(0);
+    this.engine.onTouchDown(this.dragY[0]);
+
+    for (int i = 0; i < MOVES_PER_GESTURE; i++)
+      this.engine.applyMotion(this.engine.onTouchMove(this.dragY[i]));
+  }
+
+
+  /**
+   * A complete gesture including the release, which runs processHeaderScrollPosition.
+   */
+  @Benchmark
+  @OperationsPerInvocation(MOVES_PER_GESTURE + 2)
+  public void gesture()
+  {
+    this.engine.setActiveScroller(0);
+    this.engine.onTouchDown(this.dragY[0]);
+
+    for (int i = 0; i < MOVES_PER_GESTURE; i++)
+      this.engine.applyMotion(this.engine.onTouchMove(this.dragY[i]));
+
+    this.engine.onTouchUp(FLING_VELOCITY);
+  }
+
+
+  /**
+   * Only the decision which way the header snaps after the finger has been released.
+   */
+  @Benchmark
+  public int processHeaderScrollPosition()
+  {
+    this.engine.setActiveScroller(0);
+    this.engine.processHeaderScrollPosition();
+    return this.host.snapCount;
+  }
+
+
+  /**
+   * Stands in for the views. Snapping is only counted, so the header stays where the drag left it.
+   */
+  private static class FakeHost implements HeaderScrollEngine.Host
+  {
+    private float headerY;
+    private float scrollerTopSum;
+    private int snapCount;
+
+    @Override
+    public void setHeaderY(float y)
+    {
+      this.headerY = y;
+    }
+
+    @Override
+    public void repositionScroller(int scroller, float top)
+    {
+      this.scrollerTopSum += top;
+    }
+
+    @Override
+    public int onHeaderBeforeAnimation(int scroller)
+    {
+      return HeaderScrollEngine.ANIMATE_HEADER_USE_DEFAULT;
+    }
+
+    @Override
+    public void animateHeaderUp()
+    {
+      this.snapCount++;
+    }
+
+    @Override
+    public void animateHeaderDown()
+    {
+      this.snapCount++;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.test.AndroidTestCase;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies that a recorded gesture survives being written and read back and that replaying it is deterministic.
+ */
+public class GestureTraceTest extends AndroidTestCase
+{
+  private final static int MOVE_COUNT = 50;
+  private final static int SAMPLES_PER_MOVE = 3;
+
+  // JBHeaderScroll only holds its scrollers weakly. The fixtures hold them strongly and are kept here until the
+  // test ends so that no scroller can be collected while a gesture is recorded or replayed.
+  private final List<HeaderScrollFixture> fixtures = new ArrayList<>();
+
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    this.fixtures.clear();
+    super.tearDown();
+  }
+
+
+  public void testWriteAndReadBack() throws Exception
+  {
+    JBHeaderScroll jbHeaderScroll = createHeaderScroll();
+    GestureTrace trace = new GestureTrace(2 * MOVE_COUNT);
+    jbHeaderScroll.setGestureTrace(trace);
+    drag(jbHeaderScroll);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    trace.writeTo(out);
+    GestureTrace readTrace = GestureTrace.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(MOVE_COUNT + 1, trace.getEventCount());
+    assertEquals(trace.getEventCount(), readTrace.getEventCount());
+    assertEquals(trace.getStartTime(), readTrace.getStartTime());
+
+    for (int i = 0; i < trace.getEventCount(); i++)
+    {
+      assertEquals(trace.getAction(i), readTrace.getAction(i));
+      assertEquals(trace.getScroller(i), readTrace.getScroller(i));
+      assertEquals(trace.getX(i), readTrace.getX(i));
+      assertEquals(trace.getY(i), readTrace.getY(i));
+      assertEquals(trace.getEventTime(i), readTrace.getEventTime(i));
+    }
+  }
+
+
+  public void testBatchedSamplesAreRecordedAndReplayed() throws Exception
+  {
+    JBHeaderScroll recorded = createHeaderScroll();
+    GestureTrace trace = new GestureTrace(2 * MOVE_COUNT);
+    recorded.setGestureTrace(trace);
+    dragBatched(recorded);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    trace.writeTo(out);
+    GestureTrace readTrace = GestureTrace.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(SAMPLES_PER_MOVE - 1, trace.getHistorySize(1));
+    assertSameSamples(trace, readTrace);
+
+    // Record what the replay feeds into JBHeaderScroll. It must be the same as the live gesture, sample by sample.
+    JBHeaderScroll replayed = createHeaderScroll();
+    GestureTrace replayedTrace = new GestureTrace(2 * MOVE_COUNT);
+    replayed.setGestureTrace(replayedTrace);
+    new GestureTraceReplayer(replayed).replay(trace);
+
+    assertSameSamples(trace, replayedTrace);
+  }
+
+
+  public void testReplayIsDeterministic()
+  {
+    JBHeaderScroll recorded = createHeaderScroll();
+    GestureTrace trace = new GestureTrace(4 * MOVE_COUNT);
+    recorded.setGestureTrace(trace);
+    drag(recorded);
+
+    GestureTraceReplayer.Report first = new GestureTraceReplayer(createHeaderScroll()).replay(trace);
+    GestureTraceReplayer.Report second = new GestureTraceReplayer(createHeaderScroll()).replay(trace);
+
+    assertEquals(trace.getEventCount(), first.getEventCount());
+    assertTrue(first.getRepositionCallCount() > 0);
+    assertEquals(first.getRepositionCallCount(), second.getRepositionCallCount());
+    assertEquals(first.getBeforeAnimationCallCount(), second.getBeforeAnimationCallCount());
+
+    for (int i = 0; i < first.getEventCount(); i++)
+      assertEquals(first.getHeaderY(i), second.getHeaderY(i));
+  }
+
+
+  private static void assertSameSamples(GestureTrace expected, GestureTrace actual)
+  {
+    assertEquals(expected.getEventCount(), actual.getEventCount());
+
+    for (int i = 0; i < expected.getEventCount(); i++)
+    {
+      assertEquals(expected.getAction(i), actual.getAction(i));
+      assertEquals(expected.getScroller(i), actual.getScroller(i));
+      assertEquals(expected.getX(i), actual.getX(i));
+      assertEquals(expected.getY(i), actual.getY(i));
+      assertEquals(expected.getEventTime(i), actual.getEventTime(i));
+      assertEquals(expected.getHistorySize(i), actual.getHistorySize(i));
+
+      for (int h = 0; h < expected.getHistorySize(i); h++)
+      {
+        assertEquals(expected.getHistoricalX(i, h), actual.getHistoricalX(i, h));
+        assertEquals(expected.getHistoricalY(i, h), actual.getHistoricalY(i, h));
+        assertEquals(expected.getHistoricalEventTime(i, h), actual.getHistoricalEventTime(i, h));
+      }
+    }
+  }
+
+
+  private JBHeaderScroll createHeaderScroll()
+  {
+    HeaderScrollFixture fixture = new HeaderScrollFixture(getContext(), 1);
+    this.fixtures.add(fixture);
+    return fixture.jbHeaderScroll;
+  }
+
+
+  /**
+   * Drags the only scroller up and releases it.
+   */
+  private void drag(JBHeaderScroll jbHeaderScroll)
+  {
+    View scroller = jbHeaderScroll.getScrollerView(0);
+    MotionEvent event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 100, 700, 0);
+
+    try
+    {
+      jbHeaderScroll.onRootDispatchTouchEventListener(event);
+      jbHeaderScroll.onScrollerDispatchTouchEventListener(scroller, event);
+
+      for (int i = 1; i < MOVE_COUNT - 1; i++)
+      {
+        event.recycle();
+        event = MotionEvent.obtain(0, i * 8, MotionEvent.ACTION_MOVE, 100, 700 - (i * 3), 0);
+        jbHeaderScroll.onRootDispatchTouchEventListener(event);
+      }
+
+      event.recycle();
+      event = MotionEvent.obtain(0, MOVE_COUNT * 8, MotionEvent.ACTION_UP, 100, 700 - (MOVE_COUNT * 3), 0);
+      jbHeaderScroll.onRootDispatchTouchEventListener(event);
+    }
+    finally
+    {
+      event.recycle();
+    }
+  }
+
+
+  /**
+   * Drags the only scroller up with several samples batched into every move, the way the platform delivers a
+   * fast touch panel, and releases it.
+   */
+  private void dragBatched(JBHeaderScroll jbHeaderScroll)
+  {
+    View scroller = jbHeaderScroll.getScrollerView(0);
+    MotionEvent event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 100, 700, 0);
+
+    try
+    {
+      jbHeaderScroll.onRootDispatchTouchEventListener(event);
+      jbHeaderScroll.onScrollerDispatchTouchEventListener(scroller, event);
+
+      int sample = 0;
+
+      for (int i = 1; i < MOVE_COUNT - 1; i++)
+      {
+        event.recycle();
+        sample++;
+        event = MotionEvent.obtain(0, sample * 4, MotionEvent.ACTION_MOVE, 100, 700 - (sample * 2), 0);
+
+        for (int h = 1; h < SAMPLES_PER_MOVE; h++)
+        {
+          sample++;
+          event.addBatch(sample * 4, 100, 700 - (sample * 2), 1, 1, 0);
+        }
+
+        jbHeaderScroll.onRootDispatchTouchEventListener(event);
+      }
+
+      event.recycle();
+      sample++;
+      event = MotionEvent.obtain(0, sample * 4, MotionEvent.ACTION_UP, 100, 700 - (sample * 2), 0);
+      jbHeaderScroll.onRootDispatchTouchEventListener(event);
+    }
+    finally
+    {
+      event.recycle();
+    }
+  }
+}
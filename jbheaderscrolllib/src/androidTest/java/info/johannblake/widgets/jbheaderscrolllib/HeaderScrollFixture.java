@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * A detached header with scrollers laid out below it, registered with a JBHeaderScroll that is ready to
+ * receive motion events. JBHeaderScroll only holds its scrollers weakly, so keep the fixture reachable for as long
+ * as its JBHeaderScroll is used.
+ */
+class HeaderScrollFixture
+{
+  final static int HEADER_HEIGHT = 200;
+  final static int WIDTH = 480;
+  final static int SCROLLER_HEIGHT = 800;
+
+  final View header;
+  final View[] scrollers;
+  final JBHeaderScroll jbHeaderScroll;
+
+
+  HeaderScrollFixture(Context context, int scrollerCount)
+  {
+    this(context, scrollerCount, null, null);
+  }
+
+
+  /**
+   * Creates the header through the group if one is given, with parent as the header whose scroller contains it.
+   */
+  HeaderScrollFixture(Context context, int scrollerCount, JBHeaderScrollGroup group, JBHeaderScroll parent)
+  {
+    this.header = new View(context);
+    this.header.layout(0, 0, WIDTH, HEADER_HEIGHT);
+
+    this.jbHeaderScroll = (group != null) ? group.addHeader(this.header, 0, parent) : new JBHeaderScroll(this.header, 0);
+    this.scrollers = new View[scrollerCount];
+
+    for (int i = 0; i < scrollerCount; i++)
+    {
+      View scroller = new View(context);
+      scroller.layout(0, 0, WIDTH, SCROLLER_HEIGHT);
+      scroller.setY(HEADER_HEIGHT);
+
+      this.scrollers[i] = scroller;
+      this.jbHeaderScroll.registerScroller(scroller, new NoOpScroller());
+    }
+
+    // The header is detached, so the layout that initializes JBHeaderScroll has to be reported manually.
+    this.header.getViewTreeObserver().dispatchOnGlobalLayout();
+  }
+
+
+  static class NoOpScroller implements JBHeaderScroll.IJBHeaderScroll
+  {
+    @Override
+    public void onReposition(float top, boolean scrollingUp, float scrollDelta)
+    {
+    }
+
+    @Override
+    public int onHeaderBeforeAnimation(boolean scrollingUp, float scrollDelta)
+    {
+      return JBHeaderScroll.ANIMATE_HEADER_USE_DEFAULT;
+    }
+
+    @Override
+    public void onHeaderAfterAnimation(boolean animatedUp, float scrollDelta)
+    {
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.view.MotionEvent;
+
+/**
+ * Verifies that moving the header during a drag doesn't allocate any objects once the gesture is under way.
+ */
+public class JBHeaderScrollAllocationTest extends AndroidTestCase
+{
+  private final static int SCROLLER_COUNT = 3;
+  private final static int EVENT_COUNT = 1000;
+
+  private HeaderScrollFixture fixture;
+  private JBHeaderScroll jbHeaderScroll;
+
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    super.setUp();
+
+    this.fixture = new HeaderScrollFixture(getContext(), SCROLLER_COUNT);
+    this.jbHeaderScroll = this.fixture.jbHeaderScroll;
+  }
+
+
+  public void testDragDoesNotAllocate()
+  {
+    long downTime = SystemClock.uptimeMillis();
+    MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, 100, 500, 0);
+    MotionEvent move = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, 100, 500, 0);
+
+    // Precompute a drag that moves up and down repeatedly so that both directions and both
+    // saturated header positions are exercised.
+    float[] y = new float[EVENT_COUNT];
+
+    for (int i = 0; i < EVENT_COUNT; i++)
+      y[i] = 500 + (float) (400 * Math.sin(i / 50.0));
+
+    try
+    {
+      this.jbHeaderScroll.onRootDispatchTouchEventListener(down);
+      this.jbHeaderScroll.onScrollerDispatchTouchEventListener(this.fixture.scrollers[0], down);
+
+      // Warm up so that one time initialization isn't counted.
+      drag(move, y);
+
+      Debug.resetThreadAllocCount();
+      Debug.startAllocCounting();
+      drag(move, y);
+      Debug.stopAllocCounting();
+
+      assertEquals("Objects allocated during a " + EVENT_COUNT + " event drag", 0, Debug.getThreadAllocCount());
+    }
+    finally
+    {
+      down.recycle();
+      move.recycle();
+    }
+  }
+
+
+  private void drag(MotionEvent move, float[] y)
+  {
+    for (int i = 0; i < y.length; i++)
+    {
+      move.setLocation(100, y[i]);
+      this.jbHeaderScroll.onRootDispatchTouchEventListener(move);
+    }
+  }
+}
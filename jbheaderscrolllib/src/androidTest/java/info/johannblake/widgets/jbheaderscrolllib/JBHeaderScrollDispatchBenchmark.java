@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+import android.view.MotionEvent;
+
+/**
+ * Measures JBHeaderScroll.onRootDispatchTouchEventListener with synthetic gestures over 1, 3 and 50 registered
+ * scrollers. It drives the real dispatch path, including the MotionEvent handling, VelocityTracker and hit testing
+ * that HeaderScrollEngineBenchmark leaves out because they need a device.
+ * <p/>
+ * For every scroller count the time and the number of bytes allocated per motion event are written to the log. The
+ * allocations are counted with the runtime's allocation counter (Debug.startAllocCounting) in a separate pass so
+ * that counting doesn't skew the time:
+ * <p/>
+ * adb logcat -s JBHeaderScrollDispatchBenchmark
+ * <p/>
+ * The benchmark has no assertions and takes a while, so it only measures when the tests are built with
+ * -PrunBenchmarks. Otherwise it returns at once and connectedAndroidTest isn't slowed down by it.
+ */
+@LargeTest
+public class JBHeaderScrollDispatchBenchmark extends AndroidTestCase
+{
+  private final String LOG_TAG = "JBHeaderScrollDispatchBenchmark";
+
+  private final static int[] SCROLLER_COUNTS = {1, 3, 50};
+  private final static int MOVES_PER_GESTURE = 100;
+  private final static int WARMUP_GESTURES = 100;
+  private final static int MEASURED_GESTURES = 500;
+
+
+  public void testDispatch()
+  {
+    if (!BuildConfig.RUN_BENCHMARKS)
+    {
+      Log.i(LOG_TAG, "Skipped, run the tests with -PrunBenchmarks to measure the dispatch path.");
+      return;
+    }
+
+    // A drag that moves up and down repeatedly so that both directions and both saturated header
+    // positions are exercised.
+    float[] y = new float[MOVES_PER_GESTURE];
+
+    for (int i = 0; i < MOVES_PER_GESTURE; i++)
+      y[i] = 500 + (float) (400 * Math.sin(i / 8.0));
+
+    long downTime = SystemClock.uptimeMillis();
+    MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, 100, y[0], 0);
+    MotionEvent move = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, 100, y[0], 0);
+
+    try
+    {
+      for (int scrollerCount : SCROLLER_COUNTS)
+      {
+        HeaderScrollFixture fixture = new HeaderScrollFixture(getContext(), scrollerCount);
+        int eventCount = MEASURED_GESTURES * (MOVES_PER_GESTURE + 1);
+
+        runGestures(fixture.jbHeaderScroll, down, move, y, WARMUP_GESTURES);
+
+        long startNanos = System.nanoTime();
+        runGestures(fixture.jbHeaderScroll, down, move, y, MEASURED_GESTURES);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        runGestures(fixture.jbHeaderScroll, down, move, y, MEASURED_GESTURES);
+        Debug.stopAllocCounting();
+
+        Log.i(LOG_TAG, "scrollers: " + scrollerCount + ", ns/event: " + (elapsedNanos / eventCount) + ", bytes/event: " + ((float) Debug.getThreadAllocSize() / eventCount));
+
+        fixture.jbHeaderScroll.release();
+      }
+    }
+    finally
+    {
+      down.recycle();
+      move.recycle();
+    }
+  }
+
+
+  /**
+   * Touches the first scroller and drags it along y, the given number of times. The finger is never released, so
+   * no snap animation is started.
+   */
+  private void runGestures(JBHeaderScroll jbHeaderScroll, MotionEvent down, MotionEvent move, float[] y, int gestureCount)
+  {
+    for (int gesture = 0; gesture < gestureCount; gesture++)
+    {
+      jbHeaderScroll.onRootDispatchTouchEventListener(down);
+
+      for (int i = 0; i < y.length; i++)
+      {
+        move.setLocation(100, y[i]);
+        jbHeaderScroll.onRootDispatchTouchEventListener(move);
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.view.MotionEvent;
+
+/**
+ * Verifies that releasing a gesture that has moved several headers of a group snaps every one of them.
+ */
+public class JBHeaderScrollGroupTest extends AndroidTestCase
+{
+  private final static int MOVE_INTERVAL = 100;
+
+  private JBHeaderScrollGroup group;
+  private HeaderScrollFixture outer;
+  private HeaderScrollFixture inner;
+
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    super.setUp();
+
+    this.group = new JBHeaderScrollGroup(getContext());
+    this.outer = new HeaderScrollFixture(getContext(), 1, this.group, null);
+    this.inner = new HeaderScrollFixture(getContext(), 1, this.group, this.outer.jbHeaderScroll);
+  }
+
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    this.group.release();
+    super.tearDown();
+  }
+
+
+  public void testReleaseSnapsEveryPartiallyShownHeader()
+  {
+    // Both headers start half shown, with their scrollers just below them.
+    float halfHeight = HeaderScrollFixture.HEADER_HEIGHT / 2;
+    this.outer.header.setY(-halfHeight);
+    this.outer.scrollers[0].setY(halfHeight);
+    this.inner.header.setY(-halfHeight);
+    this.inner.scrollers[0].setY(halfHeight);
+
+    long downTime = SystemClock.uptimeMillis();
+    long eventTime = downTime;
+    float y = 500;
+    MotionEvent event = MotionEvent.obtain(downTime, eventTime, MotionEvent.ACTION_DOWN, 100, y, 0);
+
+    try
+    {
+      this.group.onRootDispatchTouchEventListener(event);
+      this.outer.jbHeaderScroll.onScrollerDispatchTouchEventListener(this.outer.scrollers[0], event);
+      this.inner.jbHeaderScroll.onScrollerDispatchTouchEventListener(this.inner.scrollers[0], event);
+
+      // Drag up slowly. Whatever is left of the drag after the touch slop moves the outer header first, so both
+      // headers are still partially shown when the finger is released.
+      for (int i = 0; i < 4; i++)
+      {
+        eventTime += MOVE_INTERVAL;
+        y -= 10;
+        event.recycle();
+        event = MotionEvent.obtain(downTime, eventTime, MotionEvent.ACTION_MOVE, 100, y, 0);
+        this.group.onRootDispatchTouchEventListener(event);
+      }
+
+      eventTime += MOVE_INTERVAL;
+      event.recycle();
+      event = MotionEvent.obtain(downTime, eventTime, MotionEvent.ACTION_UP, 100, y, 0);
+      this.group.onRootDispatchTouchEventListener(event);
+    }
+    finally
+    {
+      event.recycle();
+    }
+
+    assertTrue("Outer header is partially shown", isPartiallyShown(this.outer));
+    assertTrue("Inner header is partially shown", isPartiallyShown(this.inner));
+
+    // Jump every running snap to its end rather than waiting for frames.
+    this.group.endAnimation();
+
+    assertTrue("Outer header ended at an edge", isAtEdge(this.outer));
+    assertTrue("Inner header ended at an edge", isAtEdge(this.inner));
+  }
+
+
+  private static boolean isPartiallyShown(HeaderScrollFixture fixture)
+  {
+    float y = fixture.header.getY();
+    return (y < 0) && (y > -HeaderScrollFixture.HEADER_HEIGHT);
+  }
+
+
+  private static boolean isAtEdge(HeaderScrollFixture fixture)
+  {
+    float y = fixture.header.getY();
+    return (y == 0) || (y == -HeaderScrollFixture.HEADER_HEIGHT);
+  }
+}
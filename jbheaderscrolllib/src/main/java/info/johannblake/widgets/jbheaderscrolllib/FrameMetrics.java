@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import java.util.Arrays;
+
+/**
+ * The work JBHeaderScroll did during one display frame. Passed to JBHeaderScroll.IFrameMetricsListener.
+ * <p/>
+ * A single instance is reused for every frame and all counters are primitive, so collecting metrics doesn't
+ * allocate. Listeners must copy whatever they want to keep before returning from onFrameMetrics.
+ * <p/>
+ * Times are in nanoseconds. The time spent in scroll sync includes the time spent in the onReposition
+ * callbacks it makes, or in the batch listener's onReposition if one is set, so the time taken by the library
+ * itself is getScrollSyncNanos minus the sum of getRepositionNanos over all scrollers and minus
+ * getBatchRepositionNanos.
+ */
+public class FrameMetrics
+{
+  long frameTimeNanos;
+  long frameIntervalNanos;
+  boolean frameOverrun;
+  int motionEventCount;
+  int scrollSyncCount;
+  long scrollSyncNanos;
+  int batchRepositionCount;
+  long batchRepositionNanos;
+
+  int scrollerCount;
+  long[] repositionNanos = new long[4];
+  int[] repositionCounts = new int[4];
+  long[] beforeAnimationNanos = new long[4];
+  int[] beforeAnimationCounts = new int[4];
+
+
+  /**
+   * Makes room for the counters of another scroller. Called when a scroller is registered.
+   */
+  void addScroller()
+  {
+    if (this.scrollerCount == this.repositionNanos.length)
+    {
+      int capacity = this.scrollerCount * 2;
+      this.repositionNanos = Arrays.copyOf(this.repositionNanos, capacity);
+      this.repositionCounts = Arrays.copyOf(this.repositionCounts, capacity);
+      this.beforeAnimationNanos = Arrays.copyOf(this.beforeAnimationNanos, capacity);
+      this.beforeAnimationCounts = Arrays.copyOf(this.beforeAnimationCounts, capacity);
+    }
+
+    this.scrollerCount++;
+  }
+
+
+  /**
+   * Drops the counters of a scroller that has been unregistered.
+   */
+  void removeScroller(int scroller)
+  {
+    int count = this.scrollerCount - scroller - 1;
+    System.arraycopy(this.repositionNanos, scroller + 1, this.repositionNanos, scroller, count);
+    System.arraycopy(this.repositionCounts, scroller + 1, this.repositionCounts, scroller, count);
+    System.arraycopy(this.beforeAnimationNanos, scroller + 1, this.beforeAnimationNanos, scroller, count);
+    System.arraycopy(this.beforeAnimationCounts, scroller + 1, this.beforeAnimationCounts, scroller, count);
+    this.scrollerCount--;
+  }
+
+
+  /**
+   * Clears the counters for the next frame.
+   */
+  void reset()
+  {
+    this.frameOverrun = false;
+    this.motionEventCount = 0;
+    this.scrollSyncCount = 0;
+    this.scrollSyncNanos = 0;
+    this.batchRepositionCount = 0;
+    this.batchRepositionNanos = 0;
+
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      this.repositionNanos[i] = 0;
+      this.repositionCounts[i] = 0;
+      this.beforeAnimationNanos[i] = 0;
+      this.beforeAnimationCounts[i] = 0;
+    }
+  }
+
+
+  /**
+   * Returns the time at which the frame started rendering, in the System.nanoTime time base.
+   */
+  public long getFrameTimeNanos()
+  {
+    return this.frameTimeNanos;
+  }
+
+
+  /**
+   * Returns the time between the start of the previous frame and the start of this one or 0 if this is the
+   * first frame of a gesture.
+   */
+  public long getFrameIntervalNanos()
+  {
+    return this.frameIntervalNanos;
+  }
+
+
+  /**
+   * Returns true if the frame started later than the display's refresh rate allows, meaning that at least one
+   * frame was dropped.
+   */
+  public boolean isFrameOverrun()
+  {
+    return this.frameOverrun;
+  }
+
+
+  /**
+   * Returns the number of motion events received by onRootDispatchTouchEventListener.
+   */
+  public int getMotionEventCount()
+  {
+    return this.motionEventCount;
+  }
+
+
+  /**
+   * Returns the number of times the header and scrollers were moved in response to motion or by a frame of a snap
+   * animation.
+   */
+  public int getScrollSyncCount()
+  {
+    return this.scrollSyncCount;
+  }
+
+
+  /**
+   * Returns the time spent moving the header and scrollers in response to motion or by the frames of a snap
+   * animation.
+   */
+  public long getScrollSyncNanos()
+  {
+    return this.scrollSyncNanos;
+  }
+
+
+  /**
+   * Returns the time spent in the onReposition callback of the batch listener set with
+   * JBHeaderScroll.setBatchRepositionListener. While a batch listener is set, the scrollers' own onReposition
+   * callbacks aren't called.
+   */
+  public long getBatchRepositionNanos()
+  {
+    return this.batchRepositionNanos;
+  }
+
+
+  public int getBatchRepositionCount()
+  {
+    return this.batchRepositionCount;
+  }
+
+
+  public int getScrollerCount()
+  {
+    return this.scrollerCount;
+  }
+
+
+  /**
+   * Returns the time spent in the onReposition callback of the scroller with the given registration index. See
+   * JBHeaderScroll.registerScroller for how the indexes change when a scroller is removed.
+   */
+  public long getRepositionNanos(int scroller)
+  {
+    return this.repositionNanos[scroller];
+  }
+
+
+  public int getRepositionCount(int scroller)
+  {
+    return this.repositionCounts[scroller];
+  }
+
+
+  /**
+   * Returns the time spent in the onHeaderBeforeAnimation callback of the scroller with the given registration
+   * index.
+   */
+  public long getBeforeAnimationNanos(int scroller)
+  {
+    return this.beforeAnimationNanos[scroller];
+  }
+
+
+  public int getBeforeAnimationCount(int scroller)
+  {
+    return this.beforeAnimationCounts[scroller];
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A recording of the motion events that JBHeaderScroll received, used to reproduce a gesture exactly as it
+ * happened on a device.
+ * <p/>
+ * Attach a trace with JBHeaderScroll.setGestureTrace to start recording. For every event passed to
+ * onRootDispatchTouchEventListener or onScrollerDispatchTouchEventListener, the trace stores the action, the
+ * screen position, the event time and the index of the scroller that received it (or SCROLLER_ROOT). The samples
+ * that the platform has batched into a move as its history are stored along with it, since JBHeaderScroll and its
+ * VelocityTracker process every one of them. The events are kept in preallocated primitive arrays, so recording
+ * doesn't allocate. Once the trace is full, further events are dropped.
+ * <p/>
+ * A trace is written with writeTo and read back with readFrom. The binary format is a header (magic number,
+ * version, event count, historical sample count and the time of the first event) followed by each event: the action as a byte, the
+ * scroller index as a short, the number of historical samples as a short and then every historical sample
+ * followed by the event's own sample. A sample is 12 bytes: the raw X and Y positions as floats and its time as
+ * milliseconds since the first event. Raw positions are recorded because JBHeaderScroll finds the touched scroller
+ * from the screen position of ACTION_DOWN. Traces written in version 1 of the format, which had no history, can
+ * still be read.
+ * GestureTraceReplayer feeds a trace back into JBHeaderScroll.
+ */
+public class GestureTrace
+{
+  public final static int SCROLLER_ROOT = -1;
+
+  private final static int MAGIC = 0x4a424854; // "JBHT"
+  private final static int VERSION = 2;
+  private final static int VERSION_WITHOUT_HISTORY = 1;
+
+  private final static int HISTORY_PER_EVENT = 4;
+
+  private final byte[] actions;
+  private final short[] scrollers;
+  private final float[] x;
+  private final float[] y;
+  private final int[] eventTimes;
+  private final int[] historyStarts;
+  private final short[] historySizes;
+  private int eventCount;
+  private boolean full;
+  private long startTime;
+
+  private final float[] historicalX;
+  private final float[] historicalY;
+  private final int[] historicalEventTimes;
+  private int historyCount;
+
+
+  /**
+   * Creates a trace with room for an average of four historical samples per event.
+   *
+   * @param capacity The maximum number of events the trace can hold.
+   */
+  public GestureTrace(int capacity)
+  {
+    this(capacity, capacity * HISTORY_PER_EVENT);
+  }
+
+
+  /**
+   * @param capacity        The maximum number of events the trace can hold.
+   * @param historyCapacity The maximum number of historical samples the trace can hold across all events.
+   */
+  public GestureTrace(int capacity, int historyCapacity)
+  {
+    this.actions = new byte[capacity];
+    this.scrollers = new short[capacity];
+    this.x = new float[capacity];
+    this.y = new float[capacity];
+    this.eventTimes = new int[capacity];
+    this.historyStarts = new int[capacity];
+    this.historySizes = new short[capacity];
+
+    this.historicalX = new float[historyCapacity];
+    this.historicalY = new float[historyCapacity];
+    this.historicalEventTimes = new int[historyCapacity];
+  }
+
+
+  /**
+   * Records a motion event. Called by JBHeaderScroll.
+   *
+   * @param scroller The index of the scroller that received the event or SCROLLER_ROOT.
+   * @param event    The motion event that was received.
+   */
+  void record(int scroller, MotionEvent event)
+  {
+    int historySize = event.getHistorySize();
+
+    if (this.full || (this.eventCount == this.actions.length) || (this.historyCount + historySize > this.historicalX.length))
+    {
+      this.full = true;
+      return;
+    }
+
+    if (this.eventCount == 0)
+      this.startTime = (historySize > 0) ? event.getHistoricalEventTime(0) : event.getEventTime();
+
+    // MotionEvent has no raw positions for historical samples. They are offset from the window the same way as the
+    // event's own sample.
+    float rawOffsetX = event.getRawX() - event.getX();
+    float rawOffsetY = event.getRawY() - event.getY();
+
+    int i = this.eventCount++;
+    this.actions[i] = (byte) event.getActionMasked();
+    this.scrollers[i] = (short) scroller;
+    this.historyStarts[i] = this.historyCount;
+    this.historySizes[i] = (short) historySize;
+
+    for (int h = 0; h < historySize; h++)
+    {
+      int sample = this.historyCount++;
+      this.historicalX[sample] = event.getHistoricalX(h) + rawOffsetX;
+      this.historicalY[sample] = event.getHistoricalY(h) + rawOffsetY;
+      this.historicalEventTimes[sample] = (int) (event.getHistoricalEventTime(h) - this.startTime);
+    }
+
+    this.x[i] = event.getRawX();
+    this.y[i] = event.getRawY();
+    this.eventTimes[i] = (int) (event.getEventTime() - this.startTime);
+  }
+
+
+  /**
+   * Discards all recorded events.
+   */
+  public void clear()
+  {
+    this.eventCount = 0;
+    this.historyCount = 0;
+    this.full = false;
+  }
+
+
+  public boolean isFull()
+  {
+    return this.full || (this.eventCount == this.actions.length);
+  }
+
+
+  public int getEventCount()
+  {
+    return this.eventCount;
+  }
+
+
+  public int getAction(int event)
+  {
+    return this.actions[event];
+  }
+
+
+  /**
+   * Returns the index of the scroller that received the event or SCROLLER_ROOT.
+   */
+  public int getScroller(int event)
+  {
+    return this.scrollers[event];
+  }
+
+
+  /**
+   * Returns the raw X position of the event on the screen.
+   */
+  public float getX(int event)
+  {
+    return this.x[event];
+  }
+
+
+  /**
+   * Returns the raw Y position of the event on the screen.
+   */
+  public float getY(int event)
+  {
+    return this.y[event];
+  }
+
+
+  /**
+   * Returns the time of the event in milliseconds since the first event of the trace.
+   */
+  public int getEventTime(int event)
+  {
+    return this.eventTimes[event];
+  }
+
+
+  /**
+   * Returns the number of historical samples that were batched into the event, as MotionEvent.getHistorySize.
+   */
+  public int getHistorySize(int event)
+  {
+    return this.historySizes[event];
+  }
+
+
+  /**
+   * Returns the raw X position of one of the event's historical samples, the oldest first.
+   */
+  public float getHistoricalX(int event, int pos)
+  {
+    return this.historicalX[this.historyStarts[event] + pos];
+  }
+
+
+  /**
+   * Returns the raw Y position of one of the event's historical samples, the oldest first.
+   */
+  public float getHistoricalY(int event, int pos)
+  {
+    return this.historicalY[this.historyStarts[event] + pos];
+  }
+
+
+  /**
+   * Returns the time of one of the event's historical samples in milliseconds since the first event of the trace.
+   */
+  public int getHistoricalEventTime(int event, int pos)
+  {
+    return this.historicalEventTimes[this.historyStarts[event] + pos];
+  }
+
+
+  /**
+   * Returns the uptime in milliseconds of the first event of the trace.
+   */
+  public long getStartTime()
+  {
+    return this.startTime;
+  }
+
+
+  /**
+   * Writes the trace in its binary format. The stream isn't closed.
+   */
+  public void writeTo(OutputStream outputStream) throws IOException
+  {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeInt(this.eventCount);
+    out.writeInt(this.historyCount);
+    out.writeLong(this.startTime);
+
+    for (int i = 0; i < this.eventCount; i++)
+    {
+      out.writeByte(this.actions[i]);
+      out.writeShort(this.scrollers[i]);
+      out.writeShort(this.historySizes[i]);
+
+      for (int h = 0; h < this.historySizes[i]; h++)
+      {
+        int sample = this.historyStarts[i] + h;
+        out.writeFloat(this.historicalX[sample]);
+        out.writeFloat(this.historicalY[sample]);
+        out.writeInt(this.historicalEventTimes[sample]);
+      }
+
+      out.writeFloat(this.x[i]);
+      out.writeFloat(this.y[i]);
+      out.writeInt(this.eventTimes[i]);
+    }
+
+    out.flush();
+  }
+
+
+  /**
+   * Reads a trace that was written with writeTo. The stream isn't closed.
+   */
+  public static GestureTrace readFrom(InputStream inputStream) throws IOException
+  {
+    DataInputStream in = new DataInputStream(inputStream);
+
+    if (in.readInt() != MAGIC)
+      throw new IOException("Not a gesture trace.");
+
+    int version = in.readShort();
+
+    if ((version != VERSION) && (version != VERSION_WITHOUT_HISTORY))
+      throw new IOException("Unsupported gesture trace version: " + version);
+
+    int eventCount = in.readInt();
+    int historyCount = (version == VERSION) ? in.readInt() : 0;
+    GestureTrace trace = new GestureTrace(eventCount, historyCount);
+    trace.startTime = in.readLong();
+
+    for (int i = 0; i < eventCount; i++)
+    {
+      trace.actions[i] = in.readByte();
+      trace.scrollers[i] = in.readShort();
+      trace.historyStarts[i] = trace.historyCount;
+      trace.historySizes[i] = (version == VERSION) ? in.readShort() : 0;
+
+      if (trace.historyCount + trace.historySizes[i] > historyCount)
+        throw new IOException("Corrupt gesture trace.");
+
+      for (int h = 0; h < trace.historySizes[i]; h++)
+      {
+        int sample = trace.historyCount++;
+        trace.historicalX[sample] = in.readFloat();
+        trace.historicalY[sample] = in.readFloat();
+        trace.historicalEventTimes[sample] = in.readInt();
+      }
+
+      trace.x[i] = in.readFloat();
+      trace.y[i] = in.readFloat();
+      trace.eventTimes[i] = in.readInt();
+    }
+
+    trace.eventCount = eventCount;
+    return trace;
+  }
+}
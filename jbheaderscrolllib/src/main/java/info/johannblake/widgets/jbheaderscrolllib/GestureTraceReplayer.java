@@ -0,0 +1,321 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.MotionEvent;
+
+/**
+ * Feeds a recorded GestureTrace back into a JBHeaderScroll and reports where the header was after every
+ * event, how many client callbacks were made and how long each event took to process.
+ * <p/>
+ * The JBHeaderScroll must be initialized and have its scrollers registered in the same order as when the
+ * trace was recorded, since events are routed to scrollers by their registration index. The events are
+ * re-timed relative to the start of the replay and rebuilt with the historical samples they had, so the touch
+ * filter and the velocity measured on release see the same input as when the trace was recorded.
+ * <p/>
+ * replay runs the trace at full speed on the calling thread and returns once every event has been processed.
+ * Because no frames are rendered in between, a header animation that is still running when the next gesture
+ * starts is ended first, which makes the outcome deterministic. replayRealTime paces the events as they were
+ * recorded, so motion coalescing and header animations behave as they did on the device. Both must be called
+ * on the UI thread.
+ */
+public class GestureTraceReplayer
+{
+  private final String LOG_TAG = "GestureTraceReplayer";
+
+  private final JBHeaderScroll jbHeaderScroll;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+
+  private GestureTrace trace;
+  private Report report;
+  private Listener listener;
+  private long replayStartTime;
+  private long downTime;
+  private int nextEvent;
+
+
+  public GestureTraceReplayer(JBHeaderScroll jbHeaderScroll)
+  {
+    this.jbHeaderScroll = jbHeaderScroll;
+  }
+
+
+  /**
+   * Replays the trace as fast as possible and returns the results.
+   */
+  public Report replay(GestureTrace trace)
+  {
+    start(trace);
+
+    for (int i = 0; i < trace.getEventCount(); i++)
+    {
+      if ((trace.getAction(i) == MotionEvent.ACTION_DOWN) && (trace.getScroller(i) == GestureTrace.SCROLLER_ROOT))
+        this.jbHeaderScroll.endHeaderAnimation();
+
+      dispatchEvent(i);
+    }
+
+    return finish();
+  }
+
+
+  /**
+   * Replays the trace with the events spaced as they were recorded. The listener is called on the UI thread
+   * once the last event has been processed.
+   */
+  public void replayRealTime(GestureTrace trace, Listener listener)
+  {
+    cancel();
+    start(trace);
+    this.listener = listener;
+    this.handler.post(this.replayNextEvent);
+  }
+
+
+  /**
+   * Stops a replay that was started with replayRealTime. The listener isn't called.
+   */
+  public void cancel()
+  {
+    this.handler.removeCallbacks(this.replayNextEvent);
+    this.listener = null;
+  }
+
+
+  private void start(GestureTrace trace)
+  {
+    this.trace = trace;
+    this.report = new Report(trace.getEventCount());
+    this.replayStartTime = SystemClock.uptimeMillis();
+    this.nextEvent = 0;
+
+    this.report.repositionCallCount = -this.jbHeaderScroll.repositionCallCount;
+    this.report.beforeAnimationCallCount = -this.jbHeaderScroll.beforeAnimationCallCount;
+    this.report.afterAnimationCallCount = -this.jbHeaderScroll.afterAnimationCallCount;
+  }
+
+
+  private Report finish()
+  {
+    Report report = this.report;
+    report.repositionCallCount += this.jbHeaderScroll.repositionCallCount;
+    report.beforeAnimationCallCount += this.jbHeaderScroll.beforeAnimationCallCount;
+    report.afterAnimationCallCount += this.jbHeaderScroll.afterAnimationCallCount;
+
+    this.trace = null;
+    this.report = null;
+    return report;
+  }
+
+
+  /**
+   * Sends a recorded event to JBHeaderScroll and measures how long it took to process.
+   */
+  private void dispatchEvent(int i)
+  {
+    int action = this.trace.getAction(i);
+    int scroller = this.trace.getScroller(i);
+    long eventTime = this.replayStartTime + this.trace.getEventTime(i);
+
+    if (action == MotionEvent.ACTION_DOWN)
+      this.downTime = eventTime;
+
+    MotionEvent event = obtainEvent(i, action, eventTime);
+
+    try
+    {
+      long startNanos = System.nanoTime();
+
+      if (scroller == GestureTrace.SCROLLER_ROOT)
+        this.jbHeaderScroll.onRootDispatchTouchEventListener(event);
+      else
+        this.jbHeaderScroll.onScrollerDispatchTouchEventListener(this.jbHeaderScroll.getScrollerView(scroller), event);
+
+      long eventNanos = System.nanoTime() - startNanos;
+
+      this.report.eventNanos[i] = eventNanos;
+      this.report.totalNanos += eventNanos;
+
+      if (eventNanos > this.report.maxEventNanos)
+        this.report.maxEventNanos = eventNanos;
+
+      this.report.headerY[i] = this.jbHeaderScroll.vHeader.getY();
+    }
+    finally
+    {
+      event.recycle();
+    }
+  }
+
+
+  /**
+   * Rebuilds a recorded event. Its historical samples are added in front of its own sample with addBatch, so that
+   * JBHeaderScroll and its VelocityTracker receive the same samples as when the trace was recorded.
+   */
+  private MotionEvent obtainEvent(int i, int action, long eventTime)
+  {
+    int historySize = this.trace.getHistorySize(i);
+
+    if (historySize == 0)
+      return MotionEvent.obtain(this.downTime, eventTime, action, this.trace.getX(i), this.trace.getY(i), 0);
+
+    long firstTime = this.replayStartTime + this.trace.getHistoricalEventTime(i, 0);
+    MotionEvent event = MotionEvent.obtain(this.downTime, firstTime, action, this.trace.getHistoricalX(i, 0), this.trace.getHistoricalY(i, 0), 0);
+
+    for (int h = 1; h < historySize; h++)
+      event.addBatch(this.replayStartTime + this.trace.getHistoricalEventTime(i, h), this.trace.getHistoricalX(i, h), this.trace.getHistoricalY(i, h), 1, 1, 0);
+
+    event.addBatch(eventTime, this.trace.getX(i), this.trace.getY(i), 1, 1, 0);
+    return event;
+  }
+
+
+  /**
+   * Replays the next event and schedules the one after it at the time it was recorded.
+   */
+  private Runnable replayNextEvent = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      try
+      {
+        dispatchEvent(nextEvent++);
+
+        if (nextEvent < trace.getEventCount())
+        {
+          handler.postAtTime(this, replayStartTime + trace.getEventTime(nextEvent));
+          return;
+        }
+
+        Listener finishedListener = listener;
+        listener = null;
+        Report finishedReport = finish();
+
+        if (finishedListener != null)
+          finishedListener.onReplayFinished(finishedReport);
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "replayNextEvent: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * The results of a replay.
+   */
+  public static class Report
+  {
+    private final float[] headerY;
+    private final long[] eventNanos;
+    private long totalNanos;
+    private long maxEventNanos;
+    private long repositionCallCount;
+    private long beforeAnimationCallCount;
+    private long afterAnimationCallCount;
+
+    private Report(int eventCount)
+    {
+      this.headerY = new float[eventCount];
+      this.eventNanos = new long[eventCount];
+    }
+
+    public int getEventCount()
+    {
+      return this.headerY.length;
+    }
+
+    /**
+     * Returns the header's Y position after the event was processed.
+     */
+    public float getHeaderY(int event)
+    {
+      return this.headerY[event];
+    }
+
+    /**
+     * Returns the time in nanoseconds that JBHeaderScroll took to process the event, including the time
+     * spent in client callbacks.
+     */
+    public long getEventNanos(int event)
+    {
+      return this.eventNanos[event];
+    }
+
+    public long getTotalNanos()
+    {
+      return this.totalNanos;
+    }
+
+    public long getMaxEventNanos()
+    {
+      return this.maxEventNanos;
+    }
+
+    public long getAverageEventNanos()
+    {
+      return (this.headerY.length > 0) ? this.totalNanos / this.headerY.length : 0;
+    }
+
+    /**
+     * Returns the number of times onReposition was called.
+     */
+    public long getRepositionCallCount()
+    {
+      return this.repositionCallCount;
+    }
+
+    /**
+     * Returns the number of times onHeaderBeforeAnimation was called.
+     */
+    public long getBeforeAnimationCallCount()
+    {
+      return this.beforeAnimationCallCount;
+    }
+
+    /**
+     * Returns the number of times onHeaderAfterAnimation was called.
+     */
+    public long getAfterAnimationCallCount()
+    {
+      return this.afterAnimationCallCount;
+    }
+  }
+
+
+  public interface Listener
+  {
+    void onReplayFinished(Report report);
+  }
+}
@@ -0,0 +1,702 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import java.util.Arrays;
+
+/**
+ * The state machine behind JBHeaderScroll. It decides where the header and the scrollers move to while the
+ * user scrolls and which way the header snaps when the finger is released.
+ * <p/>
+ * The engine doesn't use any Android classes. It keeps the header's position and height, the bounds that
+ * scrollers move between and the top of every scroller as primitive fields and only reports the positions
+ * it has decided on to a Host, which applies them to whatever is being rendered. JBHeaderScroll is the Host
+ * for Android views, but the engine can also drive other renderers and can be run and benchmarked on a
+ * plain JVM.
+ * <p/>
+ * Because the engine doesn't read positions back from the Host, anything that moves the header or a scroller
+ * without going through the engine (such as an animation) must be reported with setHeaderY or setScrollerTop.
+ * Scrollers are identified by the index returned from addScroller.
+ */
+public class HeaderScrollEngine
+{
+  public final static int ANIMATE_HEADER_USE_DEFAULT = 0;
+  public final static int ANIMATE_HEADER_UP = 1;
+  public final static int ANIMATE_HEADER_DOWN = 2;
+
+  public final static int HEADER_ANIMATION_DURATION = 200;
+
+  private final Host host;
+  private final float minFlingVelocity;
+
+  private float headerY;
+  private float headerHeight;
+
+  // The top position last delivered to each scroller, or the one it was found at by setScrollerTop.
+  private float[] scrollerTops = new float[4];
+  private int scrollerCount;
+  private int activeScroller = -1;
+
+  private boolean fingerUp = true;
+  private boolean scrollingUp;
+  private float scrollDelta;
+  private float scrollerMinTopY;
+  private float scrollerMaxTopY;
+  private float releaseVelocityY;
+  private final TouchMotionFilter touchMotionFilter = new TouchMotionFilter();
+
+  private float headerInitialY;
+  private boolean headerAnimating;
+
+  // The scroller that was last touched, kept after the finger has been released for the snap animation.
+  private int releasedScroller = -1;
+
+  // Which scrollers move along with the header while it is animated. Determined when the animation starts.
+  private int animationScroller = -1;
+  private boolean animationAllScrollersUp;
+
+  // Set while the content scrolls underneath the header, which is then the only thing that moves.
+  private boolean headerOnlyMotion;
+
+  // Set once a motion has left the header and every scroller it applies to where they were. Further motion in the
+  // same direction (saturatedUp) can't change anything either, until the geometry is changed by something else.
+  private boolean saturated;
+  private boolean saturatedUp;
+
+
+  /**
+   * @param host             Provides access to the header and scrollers.
+   * @param minFlingVelocity The minimum velocity in pixels per second at which a released finger is considered
+   *                         to be flinging.
+   */
+  public HeaderScrollEngine(Host host, float minFlingVelocity)
+  {
+    this.host = host;
+    this.minFlingVelocity = minFlingVelocity;
+  }
+
+
+  /**
+   * Sets the upper and lower absolute Y positions that scrollers can scroll between. During scrolling, the
+   * scroller's top position (Y) is adjusted to be within this range.
+   */
+  public void setScrollerBounds(float minTopY, float maxTopY)
+  {
+    this.scrollerMinTopY = minTopY;
+    this.scrollerMaxTopY = maxTopY;
+    this.saturated = false;
+  }
+
+
+  /**
+   * Sets the height of the header. The header is fully hidden when its Y position is -height.
+   */
+  public void setHeaderHeight(float height)
+  {
+    this.headerHeight = height;
+    this.saturated = false;
+  }
+
+
+  /**
+   * Changes the height of a header that is already in use. The header's offset and the scrollers' tops are
+   * scaled by the same proportion as the height, so a header that was half hidden remains half hidden and the
+   * scrollers stay below it. The header and any scrollers whose top changes are moved through the Host. The
+   * scrollers' lower bound stays where it is.
+   */
+  public void resizeHeader(float height)
+  {
+    float scale = (this.headerHeight > 0) ? height / this.headerHeight : 1;
+
+    this.headerHeight = height;
+    this.scrollerMaxTopY = this.scrollerMinTopY + height;
+    this.saturated = false;
+
+    moveHeader(Math.max(Math.min(this.headerY * scale, 0), -height));
+
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      float top = this.scrollerMinTopY + ((this.scrollerTops[i] - this.scrollerMinTopY) * scale);
+      moveScroller(i, Math.max(Math.min(top, this.scrollerMaxTopY), this.scrollerMinTopY));
+    }
+  }
+
+
+  /**
+   * Moves the header and the first count scrollers to the given positions, such as positions that were saved
+   * before an activity was recreated. The positions are limited to the current bounds. The header and any
+   * scrollers whose top changes are moved through the Host.
+   *
+   * @param headerInitialY The edge the header had last come to rest at, as returned by getHeaderInitialY. It
+   *                       decides which scrollers follow the header when it is next scrolled.
+   */
+  public void restorePositions(float headerY, float headerInitialY, float[] scrollerTops, int count)
+  {
+    this.saturated = false;
+    this.headerInitialY = (headerInitialY < 0) ? -this.headerHeight : 0;
+    moveHeader(Math.max(Math.min(headerY, 0), -this.headerHeight));
+
+    for (int i = 0; (i < count) && (i < this.scrollerCount); i++)
+      moveScroller(i, Math.max(Math.min(scrollerTops[i], this.scrollerMaxTopY), this.scrollerMinTopY));
+  }
+
+
+  /**
+   * Sets the header's current Y position. Only needs to be called when the header was moved by something
+   * other than the engine.
+   */
+  public void setHeaderY(float y)
+  {
+    this.headerY = y;
+    this.saturated = false;
+  }
+
+
+  /**
+   * Sets the distance in pixels that the finger has to move before onTouchMove reports any motion. The finger
+   * then has to move back by more than half this distance before its direction changes. Defaults to zero.
+   */
+  public void setTouchSlop(float touchSlop)
+  {
+    this.touchMotionFilter.setTouchSlop(touchSlop);
+  }
+
+
+  /**
+   * Adds a scroller and returns the index by which the engine refers to it.
+   *
+   * @param top The current top position (Y) of the scroller.
+   */
+  public int addScroller(float top)
+  {
+    if (this.scrollerCount == this.scrollerTops.length)
+      this.scrollerTops = Arrays.copyOf(this.scrollerTops, this.scrollerCount * 2);
+
+    this.scrollerTops[this.scrollerCount] = top;
+    this.saturated = false;
+    return this.scrollerCount++;
+  }
+
+
+  /**
+   * Removes a scroller. The scrollers added after it move down by one index.
+   */
+  public void removeScroller(int scroller)
+  {
+    System.arraycopy(this.scrollerTops, scroller + 1, this.scrollerTops, scroller, this.scrollerCount - scroller - 1);
+    this.scrollerCount--;
+    this.saturated = false;
+
+    if (this.activeScroller == scroller)
+      this.activeScroller = -1;
+    else if (this.activeScroller > scroller)
+      this.activeScroller--;
+
+    if (this.releasedScroller == scroller)
+      this.releasedScroller = -1;
+    else if (this.releasedScroller > scroller)
+      this.releasedScroller--;
+
+    if (this.animationScroller == scroller)
+      this.animationScroller = -1;
+    else if (this.animationScroller > scroller)
+      this.animationScroller--;
+  }
+
+
+  /**
+   * Sets the current top position (Y) of a scroller. Only needs to be called when the scroller was moved by
+   * something other than the engine.
+   */
+  public void setScrollerTop(int scroller, float top)
+  {
+    this.scrollerTops[scroller] = top;
+    this.saturated = false;
+  }
+
+
+  public int getScrollerCount()
+  {
+    return this.scrollerCount;
+  }
+
+
+  public float getScrollerTop(int scroller)
+  {
+    return this.scrollerTops[scroller];
+  }
+
+
+  public float getHeaderY()
+  {
+    return this.headerY;
+  }
+
+
+  public float getHeaderHeight()
+  {
+    return this.headerHeight;
+  }
+
+
+  /**
+   * Sets the scroller that the user is currently touching or -1 if none.
+   */
+  public void setActiveScroller(int scroller)
+  {
+    this.activeScroller = scroller;
+    this.saturated = false;
+  }
+
+
+  public int getActiveScroller()
+  {
+    return this.activeScroller;
+  }
+
+
+  public boolean isFingerUp()
+  {
+    return this.fingerUp;
+  }
+
+
+  public boolean isScrollingUp()
+  {
+    return this.scrollingUp;
+  }
+
+
+  public float getScrollDelta()
+  {
+    return this.scrollDelta;
+  }
+
+
+  /**
+   * Returns the velocity at which the finger was released while the header snap is being decided on and 0 at
+   * any other time.
+   */
+  public float getReleaseVelocityY()
+  {
+    return this.releaseVelocityY;
+  }
+
+
+  public boolean isHeaderAnimating()
+  {
+    return this.headerAnimating;
+  }
+
+
+  /**
+   * Returns the edge the header is being animated to or, if it isn't animating, the edge it was last animated to:
+   * zero if it is fully visible there or minus its height if it is hidden.
+   */
+  public float getHeaderInitialY()
+  {
+    return this.headerInitialY;
+  }
+
+
+  /**
+   * Returns where the header comes to rest: the edge it is being animated to, or else its current position.
+   */
+  public float getRestingHeaderY()
+  {
+    return this.headerAnimating ? this.headerInitialY : this.headerY;
+  }
+
+
+  /**
+   * Returns where a scroller comes to rest once the header has finished animating, or else its current top.
+   */
+  public float getRestingScrollerTop(int scroller)
+  {
+    return this.headerAnimating ? getScrollerTopAfterAnimation(scroller, this.headerInitialY) : this.scrollerTops[scroller];
+  }
+
+
+  public float getScrollerMinTopY()
+  {
+    return this.scrollerMinTopY;
+  }
+
+
+  public float getScrollerMaxTopY()
+  {
+    return this.scrollerMaxTopY;
+  }
+
+
+  /**
+   * Must be called when the finger touches the screen.
+   */
+  public void onTouchDown(float y)
+  {
+    this.fingerUp = false;
+    this.headerOnlyMotion = false;
+    this.touchMotionFilter.onTouchDown(y);
+  }
+
+
+  /**
+   * Must be called when the finger moves. Returns the signed distance moved since the previous call, which
+   * must then be passed to applyMotion. The two are separated so that the distance of several moves can be
+   * accumulated and applied at once. Moves within the touch slop (see setTouchSlop) are returned as zero.
+   */
+  public float onTouchMove(float y)
+  {
+    return this.touchMotionFilter.onTouchMove(y);
+  }
+
+
+  /**
+   * Must be called when the finger is released.
+   *
+   * @param velocityY The velocity of the finger in pixels per second when it was released.
+   */
+  public void onTouchUp(float velocityY)
+  {
+    // Reposition the header if necessary.
+    this.fingerUp = true;
+    this.releaseVelocityY = velocityY;
+
+    if (((this.headerY != 0) && (this.headerY != -this.headerHeight)) || (this.scrollDelta != 0))
+      processHeaderScrollPosition();
+
+    // The velocity only applies to the snap that the release has just started.
+    this.releaseVelocityY = 0;
+    this.releasedScroller = this.activeScroller;
+    this.activeScroller = -1;
+  }
+
+
+  /**
+   * Moves the header and scrollers by the signed distance the finger has moved. A negative distance
+   * means the user is scrolling up. A distance of zero, such as a move that onTouchMove has filtered out,
+   * leaves the direction of the previous motion unchanged.
+   */
+  public void applyMotion(float delta)
+  {
+    if (delta == 0)
+      return;
+
+    this.scrollingUp = delta < 0;
+    this.scrollDelta = Math.abs(delta);
+    onScrollSyncMotion();
+  }
+
+
+  /**
+   * Moves only the header by the signed distance that the content has scrolled, leaving the scrollers where they
+   * are. Used when the header overlays the content instead of the scrollers being moved below it. A negative
+   * distance means the content scrolled up.
+   */
+  public void applyHeaderMotion(float delta)
+  {
+    this.scrollingUp = delta < 0;
+    this.scrollDelta = Math.abs(delta);
+
+    if ((this.scrollDelta == 0) || this.headerAnimating || this.fingerUp)
+      return;
+
+    this.headerOnlyMotion = true;
+    float y = this.headerY + delta;
+
+    if (y < -this.headerHeight)
+      y = -this.headerHeight;
+    else if (y > 0)
+      y = 0;
+
+    if (moveHeader(y))
+      this.saturated = false;
+  }
+
+
+  /**
+   * Must be called when the header starts animating to be fully hidden (up) or fully visible.
+   */
+  public void onHeaderAnimationStart(boolean up)
+  {
+    // The scrollers follow the header the same way they did during the gesture that preceded the animation.
+    this.animationScroller = this.headerOnlyMotion ? -1 : ((this.activeScroller >= 0) ? this.activeScroller : this.releasedScroller);
+    this.animationAllScrollersUp = !this.headerOnlyMotion && (this.headerInitialY == 0);
+    this.headerAnimating = true;
+    this.headerInitialY = up ? -this.headerHeight : 0;
+    this.saturated = false;
+  }
+
+
+  /**
+   * Must be called when a header animation has ended or was canceled.
+   *
+   * @param headerY The header's Y position at the end of the animation.
+   */
+  public void onHeaderAnimationEnd(float headerY)
+  {
+    this.headerAnimating = false;
+    this.headerY = headerY;
+    this.saturated = false;
+  }
+
+
+  /**
+   * Gets called when any motion is detected on the scrollview. It's responsible for scrolling the header and
+   * repositioning the scroller.
+   */
+  public void onScrollSyncMotion()
+  {
+    if (this.headerAnimating || this.fingerUp)
+      return;
+
+    // Once the header is fully hidden or visible and the scrollers are at their limits, every further motion in
+    // the same direction would be clamped to the current positions.
+    if (this.saturated && (this.saturatedUp == this.scrollingUp))
+      return;
+
+    float y;
+
+    if (this.scrollingUp)
+      y = Math.max(this.headerY - this.scrollDelta, -this.headerHeight);
+    else
+      y = Math.min(this.headerY + this.scrollDelta, 0);
+
+    boolean moved = moveHeaderAndScrollers(y, this.headerInitialY == 0, this.activeScroller);
+
+    this.saturated = !moved;
+    this.saturatedUp = this.scrollingUp;
+  }
+
+
+  /**
+   * Moves the header to y and the scrollers by the same distance in the current scrolling direction. When
+   * scrolling up, either all scrollers or only the given one are moved up. When scrolling down, only the given
+   * scroller is moved down. Returns whether anything was moved.
+   */
+  private boolean moveHeaderAndScrollers(float y, boolean allScrollersUp, int scroller)
+  {
+    boolean moved = moveHeader(y);
+
+    if (this.scrollingUp)
+    {
+      // The header's top value will be either fully up or fully down after scrolling has completed with a finger
+      // up. If the header was fully visible, all scrollers are moved up so that no gap remains above those that
+      // aren't being scrolled directly.
+      //
+      // Moving the scroller's top position upward effectively makes the scroller larger - provided the client
+      // creates a new layout and pins the scroller to its container's bottom.
+      // IMPORTANT: Originally, the height of the scroller was adjusted here but Android will readjust the height
+      // of ListViews based on internal factors, making it impossible to have a predictable height.
+      if (allScrollersUp)
+      {
+        for (int i = 0; i < this.scrollerCount; i++)
+          moved |= moveScrollerUp(i);
+      }
+      else if (scroller >= 0)
+      {
+        moved |= moveScrollerUp(scroller);
+      }
+    }
+    else if (scroller >= 0)
+    {
+      // Move the scroller's top position downward which effectively
+      // makes the scroller smaller - provided the client creates a
+      // new layout and pins the scroller to its container's bottom.
+      float newTop = this.scrollerTops[scroller] + this.scrollDelta;
+
+      if (newTop > this.scrollerMaxTopY)
+        newTop = this.scrollerMaxTopY;
+
+      moved |= moveScroller(scroller, newTop);
+    }
+
+    return moved;
+  }
+
+
+  /**
+   * Returns where a scroller will be once the header has been animated from its current position to y, without
+   * moving anything. Must be called after onHeaderAnimationStart.
+   */
+  public float getScrollerTopAfterAnimation(int scroller, float y)
+  {
+    float delta = y - this.headerY;
+    float top = this.scrollerTops[scroller];
+
+    if ((delta < 0) && (this.animationAllScrollersUp || (scroller == this.animationScroller)))
+      return Math.max(top + delta, this.scrollerMinTopY);
+
+    if ((delta > 0) && (scroller == this.animationScroller))
+      return Math.min(top + delta, this.scrollerMaxTopY);
+
+    return top;
+  }
+
+
+  /**
+   * Moves the header to y while it is being animated and the scrollers along with it, following the same rules
+   * as a drag in the direction of the animation. Must be called once for each frame of the animation.
+   */
+  public void onHeaderAnimationFrame(float y)
+  {
+    if (!this.headerAnimating || (y == this.headerY))
+      return;
+
+    float delta = y - this.headerY;
+    this.scrollingUp = delta < 0;
+    this.scrollDelta = Math.abs(delta);
+
+    moveHeaderAndScrollers(y, this.animationAllScrollersUp, this.animationScroller);
+  }
+
+
+  private boolean moveScrollerUp(int scroller)
+  {
+    float newTop = this.scrollerTops[scroller] - this.scrollDelta;
+
+    if (newTop < this.scrollerMinTopY)
+      newTop = this.scrollerMinTopY;
+
+    return moveScroller(scroller, newTop);
+  }
+
+
+  /**
+   * Moves the header unless it is already at y. Returns whether it was moved.
+   */
+  private boolean moveHeader(float y)
+  {
+    if (y == this.headerY)
+      return false;
+
+    this.headerY = y;
+    this.host.setHeaderY(y);
+    return true;
+  }
+
+
+  /**
+   * Moves a scroller unless it is already at top, in which case the client isn't notified either. Returns whether
+   * it was moved.
+   */
+  private boolean moveScroller(int scroller, float top)
+  {
+    if (top == this.scrollerTops[scroller])
+      return false;
+
+    this.scrollerTops[scroller] = top;
+    this.host.repositionScroller(scroller, top);
+    return true;
+  }
+
+
+  /**
+   * This is where the decision is made to either display or hide the header.
+   */
+  public void processHeaderScrollPosition()
+  {
+    if (!this.fingerUp || (this.activeScroller < 0))
+      return;
+
+    // Animate the header up or down if the client has requested it.
+    int animateDirection = this.host.onHeaderBeforeAnimation(this.activeScroller);
+
+    if (animateDirection == ANIMATE_HEADER_UP)
+    {
+      this.host.animateHeaderUp();
+      return;
+    }
+    else if (animateDirection == ANIMATE_HEADER_DOWN)
+    {
+      this.host.animateHeaderDown();
+      return;
+    }
+
+    float headerHalfHeight = this.headerHeight / 2;
+
+    // The finger was released while flinging. Project where the header would end up if it kept moving
+    // at the release velocity for the duration of the animation and snap to the nearer edge from there.
+    // Because the velocity is measured over time, the outcome doesn't depend on how often the touch
+    // panel samples or on the screen density.
+    if (Math.abs(this.releaseVelocityY) >= this.minFlingVelocity)
+    {
+      float projectedY = this.headerY + (this.releaseVelocityY * HEADER_ANIMATION_DURATION / 1000);
+
+      if (projectedY < -headerHalfHeight)
+        this.host.animateHeaderUp();
+      else
+        this.host.animateHeaderDown();
+
+      return;
+    }
+
+    // The scroller's top is within the range of header's height.
+    float top = this.scrollerTops[this.activeScroller];
+
+    if ((top > this.scrollerMinTopY) && (top < this.scrollerMaxTopY))
+    {
+      this.host.animateHeaderDown();
+      return;
+    }
+
+    // Scrolling down and the header is initially not visible at all.
+    if (!this.scrollingUp && (this.headerY <= -this.headerHeight))
+    {
+      this.host.animateHeaderDown();
+      return;
+    }
+
+    // The finger was released slowly. Show the header if more than half of it is visible.
+    if (this.headerY < -headerHalfHeight)
+      this.host.animateHeaderUp();
+    else
+      this.host.animateHeaderDown();
+  }
+
+
+  /**
+   * Applies the engine's decisions to whatever renders the header and the scrollers.
+   */
+  public interface Host
+  {
+    void setHeaderY(float y);
+
+    void repositionScroller(int scroller, float top);
+
+    /**
+     * Lets the client override the direction in which the header is about to be animated. Returns one of
+     * the ANIMATE_HEADER_ constants.
+     */
+    int onHeaderBeforeAnimation(int scroller);
+
+    void animateHeaderUp();
+
+    void animateHeaderDown();
+  }
+}
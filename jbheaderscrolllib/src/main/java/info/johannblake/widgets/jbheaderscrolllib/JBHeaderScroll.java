@@ -27,16 +27,27 @@
 
 package info.johannblake.widgets.jbheaderscrolllib;
 
-import android.animation.Animator;
-import android.animation.ObjectAnimator;
-import android.animation.PropertyValuesHolder;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewConfiguration;
 import android.view.ViewTreeObserver;
-import android.view.animation.LinearInterpolator;
+import android.view.WindowManager;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.OverScroller;
 
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 
 /**
  * Provides synchronization between scrolling content and headers that are moved in and out of view as content is scrolled up or down.
@@ -82,25 +93,115 @@ public class JBHeaderScroll
 
   public View vHeader;
   private boolean initialized;
-  private HashMap<View, ScrollableContent> hmScrollableViews = new HashMap<View, ScrollableContent>();
+  private ViewTreeObserver.OnGlobalLayoutListener initializer;
+
+  // The registered scrollers, in the order they were registered. Each ScrollableContent is owned by its scroller
+  // view, which holds it strongly in a tag, while JBHeaderScroll only holds it weakly. A scroller that is no
+  // longer used by the app is therefore collected along with its callback and then pruned from the array. The
+  // array is kept compact, so removing a scroller moves the scrollers registered after it down by one index.
+  @SuppressWarnings("unchecked")
+  private WeakReference<ScrollableContent>[] scrollers = new WeakReference[4];
+  private int scrollerCount;
+
+  private final HeaderScrollEngine engine;
 
-  private boolean fingerUp = true;
-  private boolean scrollingUp;
-  private float scrollDelta;
-  private float scrollerMinTopY;
-  private float scrollerMaxTopY;
-  private ScrollableContent scrollableContent;
-  private float motionEventPrevY;
+  // A single spring, advanced once per frame, drives the header and the scrollers during a snap animation.
+  private final SnapSpring snapSpring = new SnapSpring();
+  private long snapStartNanos;
 
-  private float headerInitialY;
-  private boolean headerAnimating;
-  private ObjectAnimator animatorHeader;
-  private boolean cancelHeaderAnimation;
+  // The velocity of a snap that was stopped, with which the next snap continues. A group sets it when it stops
+  // this header's spring.
+  float interruptedVelocityY;
 
+  // In SNAP_ANIMATION_RENDER_THREAD the header, and scrollers moved by translation, are animated by their
+  // ViewPropertyAnimators instead of the spring. The engine is brought up to date once the animation has ended.
+  private int snapAnimationMode = SNAP_ANIMATION_SPRING;
+  private boolean renderThreadSnapRunning;
+  private float renderThreadSnapTargetY;
+  private long renderThreadSnapDurationNanos;
+  private long renderThreadSnapEndNanos;
+  private final DecelerateInterpolator renderThreadSnapInterpolator = new DecelerateInterpolator();
 
-  public final static int ANIMATE_HEADER_USE_DEFAULT = 0;
-  public final static int ANIMATE_HEADER_UP = 1;
-  public final static int ANIMATE_HEADER_DOWN = 2;
+  private int repositionMode = REPOSITION_MODE_LAYOUT;
+  private boolean placeScrollersBelowHeader;
+
+  private boolean coalesceMotion;
+  private Choreographer choreographer;
+  private boolean frameCallbackPosted;
+  private float pendingScrollDelta;
+
+  private VelocityTracker velocityTracker;
+  private final int maxFlingVelocity;
+
+  private int hardwareLayerMode = HARDWARE_LAYER_NONE;
+  private boolean hardwareLayersActive;
+  private int headerPrevLayerType;
+
+  private GestureTrace gestureTrace;
+
+  // When a batch listener is set, the new tops of all scrollers are delivered to it once per motion instead of
+  // calling each scroller's onReposition. The array is reused for every call.
+  private IJBHeaderScrollBatch batchListener;
+  private float[] batchTops = new float[4];
+  private boolean batchPending;
+
+  // The window position of every registered scroller, used to find the scroller that is touched on
+  // ACTION_DOWN. For each scroller: left, right, the Y position of its parent's origin and its height.
+  // The vertical position is taken from the engine, since the scrollers move while the header scrolls, so
+  // moving a scroller leaves its bounds valid. Rebuilt on the first ACTION_DOWN after a layout or after
+  // scrollers have been registered or removed.
+  private float[] scrollerBounds = new float[16];
+  private boolean scrollerBoundsValid;
+  private final int[] location = new int[2];
+
+  // Set when the header is part of a JBHeaderScrollGroup, which then drives its gestures and animations.
+  JBHeaderScrollGroup group;
+
+  // Counts of the client callbacks that have been made. Read by GestureTraceReplayer.
+  long repositionCallCount;
+  long beforeAnimationCallCount;
+  long afterAnimationCallCount;
+
+  private IFrameMetricsListener frameMetricsListener;
+  private final FrameMetrics frameMetrics = new FrameMetrics();
+  private long frameBudgetNanos;
+  private long prevMetricsFrameTimeNanos;
+  private boolean metricsCallbackPosted;
+
+  private Activity boundActivity;
+
+  // Nested scrolls from JBHeaderScrollLayout. The part of a pre-scroll the header has moved but that couldn't be
+  // reported as consumed, since consumption is in whole pixels, is carried over to the next pre-scroll.
+  private float nestedFlingVelocityY;
+  private float nestedPreScrollRemainder;
+
+  // A fling of the content, which the header follows until it is fully hidden or shown or the content stops.
+  private View nestedFlingTarget;
+  private OverScroller nestedFlingScroller;
+  private int nestedFlingLastY;
+
+  // A state passed to onRestoreInstanceState before the header was laid out. Applied once it has been.
+  private Bundle pendingState;
+
+  // The keys of the saved state. The positions are saved as fractions of the header's height.
+  private final static String STATE_HEADER_OFFSET = "headerOffset";
+  private final static String STATE_SCROLLER_OFFSETS = "scrollerOffsets";
+  private final static String STATE_HEADER_INITIAL_OFFSET = "headerInitialOffset";
+
+
+  public final static int ANIMATE_HEADER_USE_DEFAULT = HeaderScrollEngine.ANIMATE_HEADER_USE_DEFAULT;
+  public final static int ANIMATE_HEADER_UP = HeaderScrollEngine.ANIMATE_HEADER_UP;
+  public final static int ANIMATE_HEADER_DOWN = HeaderScrollEngine.ANIMATE_HEADER_DOWN;
+
+  public final static int REPOSITION_MODE_LAYOUT = 0;
+  public final static int REPOSITION_MODE_TRANSLATION = 1;
+
+  public final static int HARDWARE_LAYER_NONE = 0;
+  public final static int HARDWARE_LAYER_HEADER = 1;
+  public final static int HARDWARE_LAYER_HEADER_AND_SCROLLERS = 2;
+
+  public final static int SNAP_ANIMATION_SPRING = 0;
+  public final static int SNAP_ANIMATION_RENDER_THREAD = 1;
 
 
   /**
@@ -114,12 +215,23 @@ public class JBHeaderScroll
    *                   the header, you need to provide the amount of offset in order to prevent the scroller from scrolling
    *                   beyond the upper edge of the header. So if your header has a margin or padding at the top edge of
    *                   10dp, you would set yOffset to 10.
+   * <p/>
+   * JBHeaderScroll should be created, configured and given its scrollers and saved state before the header is first
+   * laid out, for example in onCreate. Once the header's height is known, the saved state is restored before the
+   * first frame is drawn, and so are the scrollers moved below the header if setPlaceScrollersBelowHeader has been
+   * enabled. If this makes the client request a layout in onReposition, that frame is skipped and drawn after the
+   * layout instead.
    */
   public JBHeaderScroll(final View viewHeader, final int yOffset)
   {
     this.vHeader = viewHeader;
 
-    viewHeader.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+    ViewConfiguration viewConfiguration = ViewConfiguration.get(viewHeader.getContext());
+    this.maxFlingVelocity = viewConfiguration.getScaledMaximumFlingVelocity();
+    this.engine = new HeaderScrollEngine(new EngineHost(), viewConfiguration.getScaledMinimumFlingVelocity());
+    this.engine.setTouchSlop(viewConfiguration.getScaledTouchSlop());
+
+    this.initializer = new ViewTreeObserver.OnGlobalLayoutListener()
     {
       @Override
       public void onGlobalLayout()
@@ -133,10 +245,27 @@ public class JBHeaderScroll
             // Determine the upper and lower absolute Y positions that scrollers
             // can scroll between. During scrolling, the scroller's top position (Y)
             // is adjusted to be within this range.
-            scrollerMinTopY = yOffset;
-            scrollerMaxTopY = scrollerMinTopY + vHeader.getHeight();
+            engine.setScrollerBounds(yOffset, yOffset + vHeader.getHeight());
+            engine.setHeaderHeight(vHeader.getHeight());
+            engine.setHeaderY(vHeader.getY());
+            insetScrollers();
+
+            // Scrollers registered before this layout were registered at the position they had before being
+            // laid out.
+            syncGeometry();
 
-            vHeader.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+            if (placeScrollersBelowHeader)
+              moveCoveredScrollersBelowHeader();
+
+            // Restored before the first frame is drawn so that the header doesn't jump.
+            if (pendingState != null)
+              applyPendingState();
+
+            deliverBatchReposition();
+
+            ViewTreeObserver viewTreeObserver = vHeader.getViewTreeObserver();
+            viewTreeObserver.removeOnGlobalLayoutListener(this);
+            viewTreeObserver.addOnPreDrawListener(firstDrawGuard);
           }
         }
         catch (Exception ex)
@@ -144,12 +273,68 @@ public class JBHeaderScroll
           Log.e(LOG_TAG, "onGlobalLayout: " + ex.toString());
         }
       }
-    });
+    };
+
+    viewHeader.getViewTreeObserver().addOnGlobalLayoutListener(this.initializer);
+    viewHeader.getViewTreeObserver().addOnGlobalLayoutListener(this.scrollerBoundsInvalidator);
+    viewHeader.addOnLayoutChangeListener(this.headerLayoutChangeListener);
+  }
+
+
+  /**
+   * Moves the scrollers whose top edge is covered by the header to just below it. Used when the header is first
+   * laid out if setPlaceScrollersBelowHeader has been enabled.
+   */
+  private void moveCoveredScrollersBelowHeader()
+  {
+    float headerBottom = this.engine.getScrollerMinTopY() + this.engine.getHeaderY() + this.engine.getHeaderHeight();
+
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      if (this.engine.getScrollerTop(i) < headerBottom)
+      {
+        this.engine.setScrollerTop(i, headerBottom);
+        repositionScroller(i, headerBottom);
+      }
+    }
   }
 
+
+  /**
+   * Cancels the first frame if placing or restoring the scrollers has requested a layout, which happens when the
+   * client repositions them in onReposition. The frame is then drawn after that layout, so the scrollers are never
+   * shown where they were before.
+   */
+  private ViewTreeObserver.OnPreDrawListener firstDrawGuard = new ViewTreeObserver.OnPreDrawListener()
+  {
+    @Override
+    public boolean onPreDraw()
+    {
+      try
+      {
+        vHeader.getViewTreeObserver().removeOnPreDrawListener(this);
+        return !vHeader.getRootView().isLayoutRequested();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "onPreDraw: " + ex.toString());
+        return true;
+      }
+    }
+  };
+
+
   /**
    * Registers a scroller. This is required in order to have a header scroll into or out of view while the user
    * scrolls a scroller.
+   * <p/>
+   * JBHeaderScroll only holds a weak reference to the scroller. The scroller holds the reference to
+   * iJBHeaderScroll, so the callback remains registered for as long as the scroller exists and is released
+   * together with it.
+   * <p/>
+   * Scrollers are identified by the order in which they were registered, for example in the tops passed to an
+   * IJBHeaderScrollBatch, in FrameMetrics and in the saved instance state. When a scroller is unregistered or
+   * collected, every scroller registered after it moves down by one index.
    *
    * @param vScroller       The control that is performing scrolling such as a scrollview, listview, webview, etc.
    * @param iJBHeaderScroll A reference to the interface that JBHeaderScroll needs in order to communicate
@@ -159,11 +344,31 @@ public class JBHeaderScroll
   {
     try
     {
-      if (this.hmScrollableViews.get(vScroller) != null)
+      pruneScrollers();
+
+      if (indexOfScroller(vScroller) >= 0)
         return;
 
+      if (this.scrollerCount == this.scrollers.length)
+        this.scrollers = Arrays.copyOf(this.scrollers, this.scrollerCount * 2);
+
       ScrollableContent scrollableContent = new ScrollableContent(vScroller, iJBHeaderScroll);
-      this.hmScrollableViews.put(vScroller, scrollableContent);
+      scrollableContent.attachToView();
+
+      this.scrollers[this.scrollerCount++] = new WeakReference<>(scrollableContent);
+      this.engine.addScroller(vScroller.getY());
+      this.frameMetrics.addScroller();
+
+      if (this.scrollerBounds.length < this.scrollerCount * 4)
+        this.scrollerBounds = Arrays.copyOf(this.scrollerBounds, this.scrollerBounds.length * 2);
+
+      if (this.batchTops.length < this.scrollerCount)
+        this.batchTops = Arrays.copyOf(this.batchTops, this.batchTops.length * 2);
+
+      if (this.initialized)
+        insetScroller(scrollableContent);
+
+      this.scrollerBoundsValid = false;
     }
     catch (Exception ex)
     {
@@ -173,426 +378,1839 @@ public class JBHeaderScroll
 
 
   /**
-   * Receives motion events from the scroller. Scrollers must implement the dispatchTouchEvent method and call this
-   * method from there.
-   *
-   * @param v     Indicates the scroller that sent the motion event.
-   * @param event The motion event that was sent.
+   * Unregisters a scroller. The header no longer moves when the scroller is scrolled and the scroller's
+   * callback is released. The scrollers registered after it move down by one index.
    */
-
-  public void onScrollerDispatchTouchEventListener(View v, MotionEvent event)
+  public void unregisterScroller(View vScroller)
   {
     try
     {
-      if (!this.initialized)
-        return;
+      int scroller = indexOfScroller(vScroller);
 
-      if (event.getAction() == MotionEvent.ACTION_DOWN)
-        this.scrollableContent = this.hmScrollableViews.get(v);
+      if (scroller >= 0)
+        removeScroller(scroller);
     }
     catch (Exception ex)
     {
-      Log.e(LOG_TAG, "onScrollerDispatchTouchEventListener: " + ex.toString());
+      Log.e(LOG_TAG, "unregisterScroller: " + ex.toString());
     }
   }
 
 
   /**
-   * Receives all the motion events to indicate finger up/down and scrolling. Motion events
-   * are received from the client who must send the events from some level within their
-   * activity or fragment's view hierarchy but at a view that is a parent of the scroller.
-   * The scroller itself must never send motion events to this method.
-   *
-   * @param event
+   * Releases everything that JBHeaderScroll holds on to: all scrollers are unregistered, pending callbacks and
+   * animations are canceled and the listeners added to the header are removed. The instance can't be used
+   * afterwards.
+   * <p/>
+   * Call this when the views are destroyed, for example in a fragment's onDestroyView, or use bindToActivity.
    */
-  public void onRootDispatchTouchEventListener(MotionEvent event)
+  public void release()
   {
     try
     {
-      if (!this.initialized)
-        return;
-
-      if (event.getAction() == MotionEvent.ACTION_UP)
-      {
-        // Reposition the header if necessary.
-        this.fingerUp = true;
-
-        if (((this.vHeader.getY() != 0) && (this.vHeader.getY() != -this.vHeader.getHeight())) || (scrollDelta != 0))
-          onScrollSyncTouch();
-
-        this.scrollableContent = null;
-      }
-      else if (event.getAction() == MotionEvent.ACTION_DOWN)
+      stopHeaderAnimation();
+      stopNestedFling();
+      cancelPendingMotion();
+      setFrameMetricsListener(null);
+      restoreLayerTypes();
+
+      for (int i = this.scrollerCount - 1; i >= 0; i--)
+        removeScroller(i);
+
+      ViewTreeObserver viewTreeObserver = this.vHeader.getViewTreeObserver();
+      viewTreeObserver.removeOnGlobalLayoutListener(this.initializer);
+      viewTreeObserver.removeOnPreDrawListener(this.firstDrawGuard);
+      viewTreeObserver.removeOnGlobalLayoutListener(this.scrollerBoundsInvalidator);
+      this.vHeader.removeOnLayoutChangeListener(this.headerLayoutChangeListener);
+
+      if (this.velocityTracker != null)
       {
-        this.fingerUp = false;
-        this.motionEventPrevY = event.getY();
-
-        // Switch to the selected scroller.
-        //this.scrollableContent = this.hmScrollableViews.get(this.scrollableContent);
+        this.velocityTracker.recycle();
+        this.velocityTracker = null;
       }
 
-      if ((event.getAction() == MotionEvent.ACTION_MOVE) && (this.scrollableContent != null))
+      if (this.boundActivity != null)
       {
-        // Adjust the position of the scroller and header.
-        scrollingUp = event.getY() < this.motionEventPrevY;
-        scrollDelta = Math.abs(event.getY() - this.motionEventPrevY);
-        this.motionEventPrevY = event.getY();
-
-        if (this.scrollDelta != 0)
-          onScrollSyncMotion();
+        this.boundActivity.getApplication().unregisterActivityLifecycleCallbacks(this.activityLifecycleCallbacks);
+        this.boundActivity = null;
       }
+
+      this.gestureTrace = null;
+      this.batchListener = null;
+      this.initialized = false;
     }
     catch (Exception ex)
     {
-      Log.e(LOG_TAG, "onRootDispatchTouchEventListener: " + ex.toString());
+      Log.e(LOG_TAG, "release: " + ex.toString());
     }
   }
 
 
   /**
-   * Gets called when any motion is detected on the scrollview. It's responsible for scrolling the header and
-   * repositioning the scroller.
+   * Calls release when the activity is destroyed.
    */
-  private void onScrollSyncMotion()
+  public void bindToActivity(Activity activity)
   {
     try
     {
-      // Display the header if the user was flinging the scrollview down.
-      if (!scrollingUp && (this.scrollDelta > 50) && fingerUp)
-      {
-        animateHeaderDown();
-        return;
-      }
+      if (this.boundActivity != null)
+        this.boundActivity.getApplication().unregisterActivityLifecycleCallbacks(this.activityLifecycleCallbacks);
 
-      // Hide the header if the user was flinging the scrollview up.
-      if (scrollingUp && (this.scrollDelta > 50) && fingerUp)
-      {
-        animateHeaderUp();
-        return;
-      }
-
-      if (headerAnimating || fingerUp)
-        return;
+      this.boundActivity = activity;
+      activity.getApplication().registerActivityLifecycleCallbacks(this.activityLifecycleCallbacks);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "bindToActivity: " + ex.toString());
+    }
+  }
 
-      // The header's top value will be either fully up or fully down after scrolling has completed with a finger
-      // up. During the next scroll, the top is shifted either up or down depending on whether the header
-      // was initially visible or hidden and depending on whether the user scrolls up or down.
-      if (headerInitialY == 0)
-      {
-        if (scrollingUp)
-        {
-          float y = this.vHeader.getY() - this.scrollDelta;
 
-          if (y < -this.vHeader.getHeight())
-            y = -this.vHeader.getHeight();
+  /**
+   * Saves the positions of the header and the scrollers so that they can be restored after the activity has been
+   * recreated, such as after a rotation or when the process was killed in the background. Put the result into
+   * the Bundle of your activity's onSaveInstanceState and pass it to onRestoreInstanceState of the JBHeaderScroll
+   * that the new activity creates.
+   * <p/>
+   * A header that is snapping is saved as if the snap had already completed. The positions are saved relative to
+   * the header's height, so they are restored proportionally if the header has a different height afterwards.
+   */
+  public Parcelable onSaveInstanceState()
+  {
+    Bundle state = new Bundle();
 
-          this.vHeader.setY(y);
+    try
+    {
+      // Nothing has moved since a state was restored if the header hasn't been laid out yet.
+      if (!this.initialized)
+        return (this.pendingState != null) ? this.pendingState : state;
 
-          // Move the scroller's top position upward which effectively
-          // makes the scroller larger - provided the client creates a
-          // new layout and pins the scroller to its container's bottom.
-          // IMPORTANT: Originally, the height of the scroller was adjusted here
-          // but Android will readjust the height of ListViews based on internal
-          // factors, making it impossible to have a predictable height.
+      float headerHeight = this.engine.getHeaderHeight();
 
-          float delta = this.scrollDelta;
+      if (headerHeight <= 0)
+        return state;
 
-          // Tell all other scrollers to move up.
-          for (ScrollableContent scrollerContent : this.hmScrollableViews.values())
-          {
-            float newTop = scrollerContent.vContentArea.getY() - delta;
+      pruneScrollers();
 
-            if (newTop < this.scrollerMinTopY)
-              newTop = this.scrollerMinTopY;
+      float[] scrollerOffsets = new float[this.scrollerCount];
+      float scrollerMinTopY = this.engine.getScrollerMinTopY();
 
-            scrollerContent.iJBHeaderScroll.onReposition(newTop, scrollingUp, scrollDelta);
-          }
-        }
-        else
-        {
-          // Bring the header into view.
-          float y = this.vHeader.getY() + this.scrollDelta;
+      for (int i = 0; i < this.scrollerCount; i++)
+        scrollerOffsets[i] = (this.engine.getRestingScrollerTop(i) - scrollerMinTopY) / headerHeight;
 
-          if (y > 0)
-            y = 0;
+      state.putFloat(STATE_HEADER_OFFSET, -this.engine.getRestingHeaderY() / headerHeight);
+      state.putFloatArray(STATE_SCROLLER_OFFSETS, scrollerOffsets);
+      state.putFloat(STATE_HEADER_INITIAL_OFFSET, -this.engine.getHeaderInitialY() / headerHeight);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onSaveInstanceState: " + ex.toString());
+    }
 
-          this.vHeader.setY(y);
+    return state;
+  }
 
-          // Move the scroller's top position downward which effectively
-          // makes the scroller smaller - provided the client creates a
-          // new layout and pins the scroller to its container's bottom.
 
-          float newTop = this.scrollableContent.vContentArea.getY() + this.scrollDelta;
+  /**
+   * Restores the positions saved by onSaveInstanceState. If the header hasn't been laid out yet, they are applied
+   * as soon as it has been, before the first frame is drawn. The scrollers are matched by the order in which they
+   * were registered, so register them in the same order as before and before the header is first laid out.
+   * Scrollers that had been unregistered or collected when the state was saved aren't part of that order.
+   * Scrollers are moved through onReposition or, in REPOSITION_MODE_TRANSLATION, by their translation.
+   */
+  public void onRestoreInstanceState(Parcelable state)
+  {
+    try
+    {
+      if (!(state instanceof Bundle))
+        return;
 
-          if (newTop > this.scrollerMaxTopY)
-            newTop = this.scrollerMaxTopY;
+      this.pendingState = (Bundle) state;
 
-          if (this.scrollableContent.iJBHeaderScroll != null)
-            this.scrollableContent.iJBHeaderScroll.onReposition(newTop, scrollingUp, scrollDelta);
-        }
-      }
-      else
-      {
-        if (scrollingUp)
-        {
-          float y = this.vHeader.getY() - this.scrollDelta;
+      if (this.initialized)
+        applyPendingState();
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onRestoreInstanceState: " + ex.toString());
+    }
+  }
 
-          if (y < -this.vHeader.getHeight())
-            y = -this.vHeader.getHeight();
 
-          this.vHeader.setY(y);
+  /**
+   * Moves the header and the scrollers to the positions of the restored state.
+   */
+  private void applyPendingState()
+  {
+    Bundle state = this.pendingState;
+    this.pendingState = null;
 
-          float delta = this.scrollDelta;
-          float newTop = this.scrollableContent.vContentArea.getY() - delta;
+    if (!state.containsKey(STATE_HEADER_OFFSET))
+      return;
 
-          if (newTop < this.scrollerMinTopY)
-            newTop = this.scrollerMinTopY;
+    stopHeaderAnimation();
+    syncGeometry();
 
-          if (this.scrollableContent.iJBHeaderScroll != null)
-            this.scrollableContent.iJBHeaderScroll.onReposition(newTop, scrollingUp, scrollDelta);
-        }
-        else
-        {
-          // Bring the header into view.
-          float y = this.vHeader.getY() + this.scrollDelta;
+    float headerHeight = this.engine.getHeaderHeight();
+    float scrollerMinTopY = this.engine.getScrollerMinTopY();
+    float[] scrollerOffsets = state.getFloatArray(STATE_SCROLLER_OFFSETS);
+    int count = (scrollerOffsets != null) ? scrollerOffsets.length : 0;
+    float[] scrollerTops = new float[count];
 
-          if (y > 0)
-            y = 0;
+    for (int i = 0; i < count; i++)
+      scrollerTops[i] = scrollerMinTopY + (scrollerOffsets[i] * headerHeight);
 
-          this.vHeader.setY(y);
+    float headerY = -state.getFloat(STATE_HEADER_OFFSET) * headerHeight;
+    float headerInitialY = -state.getFloat(STATE_HEADER_INITIAL_OFFSET, 0) * headerHeight;
+    this.engine.restorePositions(headerY, headerInitialY, scrollerTops, count);
+    deliverBatchReposition();
+  }
 
-          // Bring the scroller into view.
 
-          float newTop = this.scrollableContent.vContentArea.getY() + this.scrollDelta;
+  private Application.ActivityLifecycleCallbacks activityLifecycleCallbacks = new Application.ActivityLifecycleCallbacks()
+  {
+    @Override
+    public void onActivityDestroyed(Activity activity)
+    {
+      if (activity == boundActivity)
+        release();
+    }
 
-          if (newTop > this.scrollerMaxTopY)
-            newTop = this.scrollerMaxTopY;
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState)
+    {
+    }
 
-          if (this.scrollableContent.iJBHeaderScroll != null)
-            this.scrollableContent.iJBHeaderScroll.onReposition(newTop, scrollingUp, scrollDelta);
-        }
-      }
+    @Override
+    public void onActivityStarted(Activity activity)
+    {
     }
-    catch (Exception ex)
+
+    @Override
+    public void onActivityResumed(Activity activity)
     {
-      Log.e(LOG_TAG, "onScrollSyncMotion: " + ex.toString());
     }
-  }
 
+    @Override
+    public void onActivityPaused(Activity activity)
+    {
+    }
 
-  /**
-   * Gets called whenever a touch event on the scrollview occurs.
-   */
-  private void onScrollSyncTouch()
-  {
-    try
+    @Override
+    public void onActivityStopped(Activity activity)
     {
-      processHeaderScrollPosition();
     }
-    catch (Exception ex)
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState)
     {
-      Log.e(LOG_TAG, "onScrollSyncTouch: " + ex.toString());
     }
-  }
+  };
 
 
   /**
-   * This is where the decision is made to either display or hide the header.
+   * Removes the scroller at the given index. The scrollers registered after it move down by one index.
    */
-  private void processHeaderScrollPosition()
+  private void removeScroller(int scroller)
   {
-    try
+    ScrollableContent scrollerContent = this.scrollers[scroller].get();
+
+    if (scrollerContent != null)
     {
-      if (this.fingerUp)
-      {
-        if (this.scrollableContent == null)
-          return;
-        
-        // Animate the header up or down if the client has requested it.
-        if (this.scrollableContent.iJBHeaderScroll != null)
-        {
-          int animateDirection = this.scrollableContent.iJBHeaderScroll.onHeaderBeforeAnimation(this.scrollingUp, this.scrollDelta);
+      if (scrollerContent.layerPromoted)
+        scrollerContent.vContentArea.setLayerType(scrollerContent.prevLayerType, null);
 
-          if (animateDirection == ANIMATE_HEADER_UP)
-          {
-            animateHeaderUp();
-            return;
-          }
-          else if (animateDirection == ANIMATE_HEADER_DOWN)
-          {
-            animateHeaderDown();
-            return;
-          }
-        }
+      setScrollerInset(scrollerContent, 0);
 
-        //The scroller's top is within the range of header's height.
-        if ((this.scrollableContent.vContentArea.getY() > this.scrollerMinTopY) && (this.scrollableContent.vContentArea.getY() < this.scrollerMaxTopY))
-        {
-          animateHeaderDown();
-          return;
-        }
+      scrollerContent.detachFromView();
+    }
 
-        // Scrolling a large delta up.
-        if (this.scrollingUp && (this.scrollDelta > this.vHeader.getHeight() / 2))
-        {
-          animateHeaderUp();
-          return;
-        }
+    System.arraycopy(this.scrollers, scroller + 1, this.scrollers, scroller, this.scrollerCount - scroller - 1);
+    this.scrollers[--this.scrollerCount] = null;
 
-        // Header's top has moved up more than half its height while scrolling up.
-        if (this.scrollingUp && (this.vHeader.getY() < -(this.vHeader.getHeight() / 2)))
-        {
-          animateHeaderUp();
-          return;
-        }
+    this.engine.removeScroller(scroller);
+    this.frameMetrics.removeScroller(scroller);
+    this.scrollerBoundsValid = false;
+  }
 
-        // Header's top has moved up less than half its height while scrolling up.
-        if (this.scrollingUp && (this.vHeader.getY() > -(this.vHeader.getHeight() / 2)))
-        {
-          animateHeaderDown();
-          return;
-        }
 
-        // Scrolling down and the header is initially not visible at all.
-        if (!this.scrollingUp && (this.vHeader.getY() <= -this.vHeader.getHeight()))
-        {
-          animateHeaderDown();
-          return;
-        }
+  /**
+   * Removes the scrollers that have been garbage collected.
+   */
+  private void pruneScrollers()
+  {
+    for (int i = this.scrollerCount - 1; i >= 0; i--)
+    {
+      if (this.scrollers[i].get() == null)
+        removeScroller(i);
+    }
+  }
 
-        // Scrolling a large delta down.
-        if (!this.scrollingUp && (this.scrollDelta > this.vHeader.getHeight() / 2))
-        {
-          animateHeaderDown();
-          return;
-        }
 
-        // Header's top has moved down more than half its height while scrolling down.
-        if (!this.scrollingUp && (this.vHeader.getY() < -(this.vHeader.getHeight() / 2)))
-        {
-          animateHeaderUp();
-          return;
-        }
+  /**
+   * Returns the scroller at the given index or null if it has been garbage collected.
+   */
+  private ScrollableContent scrollerAt(int scroller)
+  {
+    return this.scrollers[scroller].get();
+  }
 
-        // Header's top has moved down less than half its height while scrolling down.
-        if (!this.scrollingUp && (this.vHeader.getY() > -(this.vHeader.getHeight() / 2)))
-        {
-          animateHeaderDown();
-          return;
-        }
 
-      }
-      else
-      {
-        if (this.animatorHeader != null)
-          this.animatorHeader.cancel();
-      }
-    }
-    catch (Exception ex)
+  /**
+   * Returns the index of the registered scroller for the view or -1 if the view hasn't been registered.
+   * The index is the same one that the engine uses to refer to the scroller.
+   */
+  private int indexOfScroller(View vScroller)
+  {
+    for (int i = 0; i < this.scrollerCount; i++)
     {
-      Log.e(LOG_TAG, "processHeaderScrollPosition: " + ex.toString());
+      ScrollableContent scrollerContent = scrollerAt(i);
+
+      if ((scrollerContent != null) && (scrollerContent.vContentArea == vScroller))
+        return i;
     }
+
+    return -1;
   }
 
 
   /**
-   * Animates the header up to be hidden.
+   * Returns the index of the visible scroller that contains the given screen position or -1 if none does.
+   * If scrollers overlap, the one registered last wins, which is normally the one nested deepest.
    */
-  public void animateHeaderUp()
+  private int hitTestScrollers(float rawX, float rawY)
   {
-    try
+    if (!this.scrollerBoundsValid)
+      rebuildScrollerBounds();
+
+    float[] bounds = this.scrollerBounds;
+
+    for (int i = this.scrollerCount - 1; i >= 0; i--)
     {
-      if (this.animatorHeader != null)
-        this.animatorHeader.cancel();
+      int b = i * 4;
 
-      if (this.vHeader.getY() == this.scrollerMinTopY)
-        return;
+      if ((rawX < bounds[b]) || (rawX >= bounds[b + 1]))
+        continue;
 
-      headerAnimating = true;
-      this.headerInitialY = -this.vHeader.getHeight();
-      PropertyValuesHolder pvhYBar = PropertyValuesHolder.ofFloat("y", this.vHeader.getY(), -this.vHeader.getHeight());
-      this.animatorHeader = ObjectAnimator.ofPropertyValuesHolder(this.vHeader, pvhYBar);
-      this.animatorHeader.setInterpolator(new LinearInterpolator());
-      this.animatorHeader.setDuration(200);
-      this.animatorHeader.addListener(animListenerHeader);
-      this.cancelHeaderAnimation = false;
-      this.animatorHeader.start();
+      float top = bounds[b + 2] + this.engine.getScrollerTop(i);
 
-      if (this.scrollableContent != null)
-        this.scrollableContent.iJBHeaderScroll.onHeaderAfterAnimation(true, this.scrollDelta);
-    }
-    catch (Exception ex)
-    {
-      Log.e(LOG_TAG, "animateHeaderUp: " + ex.toString());
+      if ((rawY < top) || (rawY >= top + bounds[b + 3]))
+        continue;
+
+      ScrollableContent scrollerContent = scrollerAt(i);
+
+      if ((scrollerContent != null) && scrollerContent.vContentArea.isShown())
+        return i;
     }
+
+    return -1;
   }
 
 
   /**
-   * Animates the header down to be visible.
+   * Records the screen position of every registered scroller.
    */
-  public void animateHeaderDown()
+  private void rebuildScrollerBounds()
   {
-    try
+    for (int i = 0; i < this.scrollerCount; i++)
     {
-      if (this.animatorHeader != null)
-        this.animatorHeader.cancel();
+      ScrollableContent scrollerContent = scrollerAt(i);
+      int b = i * 4;
 
-      if (this.vHeader.getY() == this.scrollerMaxTopY)
-        return;
+      // A collected scroller gets empty bounds so that it is never hit.
+      if (scrollerContent == null)
+      {
+        this.scrollerBounds[b] = 0;
+        this.scrollerBounds[b + 1] = 0;
+        continue;
+      }
 
-      headerAnimating = true;
-      this.headerInitialY = 0;
-      PropertyValuesHolder pvhYBar = PropertyValuesHolder.ofFloat("y", this.vHeader.getY(), 0);
-      this.animatorHeader = ObjectAnimator.ofPropertyValuesHolder(this.vHeader, pvhYBar);
-      this.animatorHeader.setInterpolator(new LinearInterpolator());
-      this.animatorHeader.setDuration(200);
-      this.animatorHeader.addListener(animListenerHeader);
-      this.cancelHeaderAnimation = false;
-      this.animatorHeader.start();
+      View vScroller = scrollerContent.vContentArea;
+      vScroller.getLocationOnScreen(this.location);
 
-      if (this.scrollableContent != null)
-        this.scrollableContent.iJBHeaderScroll.onHeaderAfterAnimation(false, this.scrollDelta);
-    }
-    catch (Exception ex)
-    {
-      Log.e(LOG_TAG, "animateHeaderDown: " + ex.toString());
+      this.scrollerBounds[b] = this.location[0];
+      this.scrollerBounds[b + 1] = this.location[0] + vScroller.getWidth();
+      this.scrollerBounds[b + 2] = this.location[1] - vScroller.getY();
+      this.scrollerBounds[b + 3] = vScroller.getHeight();
     }
+
+    this.scrollerBoundsValid = true;
   }
 
 
   /**
-   * The animation listener. Needed to know when the animation should be canceled.
+   * Marks the cached scroller bounds as outdated whenever a layout pass has taken place.
    */
-  private Animator.AnimatorListener animListenerHeader = new Animator.AnimatorListener()
+  private ViewTreeObserver.OnGlobalLayoutListener scrollerBoundsInvalidator = new ViewTreeObserver.OnGlobalLayoutListener()
   {
     @Override
-    public void onAnimationStart(Animator animation)
+    public void onGlobalLayout()
     {
-      if (cancelHeaderAnimation)
-        animatorHeader.cancel();
+      scrollerBoundsValid = false;
     }
+  };
 
-    @Override
-    public void onAnimationEnd(Animator animation)
-    {
-      headerAnimating = false;
-      cancelHeaderAnimation = false;
-    }
 
+  /**
+   * Adapts the header's offset, the scrollers' bounds and the scrollers' positions when the header's height
+   * changes after initialization, such as when a search field expands or a banner appears in it.
+   */
+  private View.OnLayoutChangeListener headerLayoutChangeListener = new View.OnLayoutChangeListener()
+  {
     @Override
-    public void onAnimationCancel(Animator animation)
+    public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom)
     {
-      cancelHeaderAnimation = false;
-    }
+      try
+      {
+        scrollerBoundsValid = false;
+
+        int height = bottom - top;
+
+        if (!initialized || (height == engine.getHeaderHeight()))
+          return;
+
+        // A snap in progress was heading for an edge of the old height.
+        endHeaderAnimation();
+
+        engine.resizeHeader(height);
+        insetScrollers();
+        deliverBatchReposition();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "onLayoutChange: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Returns the scroller that the user is touching or null if none.
+   */
+  private ScrollableContent activeScroller()
+  {
+    int scroller = this.engine.getActiveScroller();
+    return (scroller >= 0) ? scrollerAt(scroller) : null;
+  }
+
+
+  /**
+   * Sets how registered scrollers are repositioned while the header moves.
+   * <p/>
+   * REPOSITION_MODE_LAYOUT (the default) leaves repositioning entirely to the client, which typically
+   * changes the scroller's LayoutParams in onReposition. Every change of LayoutParams results in a
+   * measure and layout pass.
+   * <p/>
+   * REPOSITION_MODE_TRANSLATION moves the scroller by setting its translationY so that a drag never
+   * requests a layout. The scroller should be laid out with its top edge aligned to the top edge of the
+   * header and fill its parent. The part of the scroller that is translated beyond its laid out bottom
+   * edge is clipped (API 18+) rather than resized. So that the end of the content can still be scrolled
+   * into view while the header is shown, the scroller's bottom padding is increased by the largest
+   * distance it can be translated. Scrollers that draw their content inside their padding, such as
+   * ListView, ScrollView and RecyclerView, should set clipToPadding to false so that the content isn't cut
+   * off above the padding while the header is hidden. onReposition is still called after the scroller has
+   * been moved, but the client must not change the scroller's layout from there.
+   * <p/>
+   * Switching back to REPOSITION_MODE_LAYOUT removes the translation, clipping and padding from the
+   * scrollers and calls onReposition so that the client can lay them out where the header has left them.
+   * <p/>
+   * The mode should be set before the header is first laid out so that scrollers placed below the header by
+   * setPlaceScrollersBelowHeader are moved in the way the mode describes.
+   *
+   * @param mode Either REPOSITION_MODE_LAYOUT or REPOSITION_MODE_TRANSLATION.
+   */
+  public void setRepositionMode(int mode)
+  {
+    try
+    {
+      if (mode == this.repositionMode)
+        return;
+
+      stopHeaderAnimation();
+      this.repositionMode = mode;
+
+      for (int i = 0; i < this.scrollerCount; i++)
+      {
+        ScrollableContent scrollerContent = scrollerAt(i);
+
+        if ((scrollerContent == null) || (mode != REPOSITION_MODE_LAYOUT))
+          continue;
+
+        View vScroller = scrollerContent.vContentArea;
+        vScroller.setTranslationY(0);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+          vScroller.setClipBounds(null);
+
+        if (this.initialized)
+          repositionScroller(i, this.engine.getScrollerTop(i));
+      }
+
+      if (this.initialized)
+      {
+        insetScrollers();
+        deliverBatchReposition();
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "setRepositionMode: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Sets whether the scrollers whose top edge is covered by the header are moved to just below it when the header
+   * is first laid out. This saves laying the scrollers out below a header whose height isn't known until then.
+   * They are moved through onReposition or, in REPOSITION_MODE_TRANSLATION, by their translation. Leave it
+   * disabled (the default) if the scrollers are already laid out below the header or are meant to be overlaid
+   * by it, such as a RecyclerView driven by a RecyclerViewHeaderScrollListener. It has no effect once the header
+   * has been laid out.
+   */
+  public void setPlaceScrollersBelowHeader(boolean place)
+  {
+    this.placeScrollersBelowHeader = place;
+  }
+
+
+  /**
+   * Updates the bottom padding of every scroller for the current reposition mode.
+   */
+  private void insetScrollers()
+  {
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      ScrollableContent scrollerContent = scrollerAt(i);
+
+      if (scrollerContent != null)
+        insetScroller(scrollerContent);
+    }
+  }
+
+
+  /**
+   * In translation mode, pads the bottom of a scroller by the largest distance that it can be translated, so
+   * that its content can be scrolled above the parent's bottom edge whenever the header pushes it down.
+   */
+  private void insetScroller(ScrollableContent scrollerContent)
+  {
+    int inset = 0;
+
+    if (this.repositionMode == REPOSITION_MODE_TRANSLATION)
+      inset = (int) Math.max(this.engine.getScrollerMaxTopY() - scrollerContent.vContentArea.getTop(), 0);
+
+    setScrollerInset(scrollerContent, inset);
+  }
+
+
+  /**
+   * Replaces the bottom padding that was added to a scroller with inset, leaving the client's own padding as it is.
+   */
+  private void setScrollerInset(ScrollableContent scrollerContent, int inset)
+  {
+    if (inset == scrollerContent.bottomInset)
+      return;
+
+    View vScroller = scrollerContent.vContentArea;
+    int paddingBottom = vScroller.getPaddingBottom() - scrollerContent.bottomInset + inset;
+    vScroller.setPadding(vScroller.getPaddingLeft(), vScroller.getPaddingTop(), vScroller.getPaddingRight(), paddingBottom);
+    scrollerContent.bottomInset = inset;
+  }
+
+
+  /**
+   * Sets the distance in pixels that the finger has to move before the header and scrollers follow it. After
+   * that, the finger has to move back by more than half this distance before it is considered to have changed
+   * direction. This keeps the jitter of a finger that is held still or moved slowly from repositioning the
+   * scrollers and from changing the direction in which the header snaps when the finger is released.
+   * <p/>
+   * Defaults to the platform's touch slop (ViewConfiguration.getScaledTouchSlop). Set it to zero to follow
+   * every move of the finger. Headers in a JBHeaderScrollGroup and headers moved by a WebViewHeaderScrollListener
+   * always use the platform's touch slop.
+   */
+  public void setTouchSlop(float touchSlop)
+  {
+    this.engine.setTouchSlop(touchSlop);
+  }
+
+
+  /**
+   * Enables or disables coalescing of motion events to the display frame rate.
+   * <p/>
+   * When enabled, the signed scroll distance of all ACTION_MOVE events received between two frames is
+   * accumulated and the header and scrollers are updated once per frame from a Choreographer callback.
+   * On touch panels that sample faster than the display refreshes, this avoids moving the header and
+   * calling onReposition several times within a single frame. Only distances in the same direction are
+   * summed, because the header and scrollers are clamped to the same limits whether they move in one step
+   * or in several. If the finger reverses within a frame, the distance summed so far is applied right away
+   * and summing starts over in the new direction. Any pending distance is applied before ACTION_UP is
+   * processed, so the header and scrollers end up where they would without coalescing. onReposition
+   * receives the summed distance as its delta.
+   * <p/>
+   * Must be called from the UI thread.
+   *
+   * @param coalesce true to update the header once per frame, false to update it for every motion event.
+   */
+  public void setCoalesceMotion(boolean coalesce)
+  {
+    try
+    {
+      if (!coalesce)
+        flushPendingMotion();
+      else if (this.choreographer == null)
+        this.choreographer = Choreographer.getInstance();
+
+      this.coalesceMotion = coalesce;
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "setCoalesceMotion: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Sets a listener that receives the work done by JBHeaderScroll in every display frame while a gesture or
+   * header animation is in progress. Use it to find out whether a dropped frame was caused by the library or
+   * by the client's callbacks. Pass null to stop collecting metrics.
+   * <p/>
+   * Timing is only measured while a listener is set. The counters are preallocated, so collecting them
+   * doesn't allocate. Must be called from the UI thread.
+   */
+  public void setFrameMetricsListener(IFrameMetricsListener listener)
+  {
+    try
+    {
+      if (listener != null)
+      {
+        if (this.choreographer == null)
+          this.choreographer = Choreographer.getInstance();
+
+        WindowManager windowManager = (WindowManager) this.vHeader.getContext().getSystemService(Context.WINDOW_SERVICE);
+        this.frameBudgetNanos = (long) (1000000000 / windowManager.getDefaultDisplay().getRefreshRate());
+      }
+      else if (this.metricsCallbackPosted)
+      {
+        this.choreographer.removeFrameCallback(this.metricsFrameCallback);
+        this.metricsCallbackPosted = false;
+      }
+
+      this.frameMetricsListener = listener;
+      this.frameMetrics.reset();
+      this.prevMetricsFrameTimeNanos = 0;
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "setFrameMetricsListener: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Sets which views are rendered into a hardware layer while the header is moving.
+   * <p/>
+   * While the header is being dragged or animated, it only changes position. Rendering it into a hardware
+   * layer lets the GPU reuse the header's last rendering instead of redrawing a complex header (menu items,
+   * search fields, images) on every frame. The previous layer types are restored as soon as the header
+   * comes to rest.
+   * <p/>
+   * HARDWARE_LAYER_HEADER_AND_SCROLLERS also promotes the registered scrollers, but only when they are moved
+   * in REPOSITION_MODE_TRANSLATION. Only use it if the content of your scrollers doesn't change while the
+   * header moves, because a layer whose content changes has to be redrawn anyway.
+   *
+   * @param mode HARDWARE_LAYER_NONE (the default), HARDWARE_LAYER_HEADER or HARDWARE_LAYER_HEADER_AND_SCROLLERS.
+   */
+  public void setHardwareLayerMode(int mode)
+  {
+    try
+    {
+      restoreLayerTypes();
+      this.hardwareLayerMode = mode;
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "setHardwareLayerMode: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Sets how the header is animated when it snaps fully into or out of view.
+   * <p/>
+   * SNAP_ANIMATION_SPRING (the default) moves the header and the scrollers with a spring that is advanced on the
+   * UI thread every frame, so onReposition is called on every frame of the snap.
+   * <p/>
+   * SNAP_ANIMATION_RENDER_THREAD hands the animation of the header's translationY to its ViewPropertyAnimator, so
+   * that each frame of the snap only updates a property of the header's hardware layer instead of running
+   * JBHeaderScroll and the client's onReposition. The animators are given no listeners or actions, so that the
+   * platform runs them on the RenderThread (API 21+, with hardware acceleration). JBHeaderScroll times the end of
+   * the snap with a Choreographer callback instead and then sets the header to its target. Scrollers moved in
+   * REPOSITION_MODE_TRANSLATION are animated alongside it the same way. Scrollers that
+   * are repositioned by the client only receive onReposition once the snap has ended or, if it is stopped by a
+   * touch, once with the top that matches wherever the platform left the header. Headers in a JBHeaderScrollGroup
+   * are always animated by the group.
+   *
+   * @param mode Either SNAP_ANIMATION_SPRING or SNAP_ANIMATION_RENDER_THREAD.
+   */
+  public void setSnapAnimationMode(int mode)
+  {
+    try
+    {
+      stopHeaderAnimation();
+      this.snapAnimationMode = mode;
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "setSnapAnimationMode: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Starts recording the motion events received by onRootDispatchTouchEventListener and
+   * onScrollerDispatchTouchEventListener into a trace. Pass null to stop recording.
+   *
+   * @param trace The trace to record into. It can be written out with GestureTrace.writeTo and replayed with
+   *              GestureTraceReplayer.
+   */
+  public void setGestureTrace(GestureTrace trace)
+  {
+    this.gestureTrace = trace;
+  }
+
+
+  /**
+   * Sets a listener that receives the new top positions of all registered scrollers in a single call whenever
+   * the header has moved them, instead of each scroller's onReposition being called. This lets a layout with
+   * several scrollers apply all of them in one layout pass. With setCoalesceMotion enabled, the listener is
+   * called at most once per frame. Pass null to go back to calling onReposition.
+   */
+  public void setBatchRepositionListener(IJBHeaderScrollBatch listener)
+  {
+    this.batchListener = listener;
+    this.batchPending = false;
+  }
+
+
+  /**
+   * Returns the view of the scroller that was registered at the given index.
+   */
+  View getScrollerView(int scroller)
+  {
+    ScrollableContent scrollerContent = scrollerAt(scroller);
+    return (scrollerContent != null) ? scrollerContent.vContentArea : null;
+  }
+
+
+  /**
+   * Receives motion events from the scroller. This is no longer required, since onRootDispatchTouchEventListener
+   * determines which scroller was touched from the position of ACTION_DOWN. If a scroller does call this method
+   * from its dispatchTouchEvent method, the scroller that it reports takes precedence.
+   *
+   * @param v     Indicates the scroller that sent the motion event.
+   * @param event The motion event that was sent.
+   */
+
+  public void onScrollerDispatchTouchEventListener(View v, MotionEvent event)
+  {
+    try
+    {
+      if (!this.initialized)
+        return;
+
+      if (this.gestureTrace != null)
+        this.gestureTrace.record(indexOfScroller(v), event);
+
+      if (event.getAction() == MotionEvent.ACTION_DOWN)
+        this.engine.setActiveScroller(indexOfScroller(v));
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onScrollerDispatchTouchEventListener: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Receives all the motion events to indicate finger up/down and scrolling. Motion events
+   * are received from the client who must send the events from some level within their
+   * activity or fragment's view hierarchy but at a view that is a parent of the scroller.
+   * The scroller itself must never send motion events to this method.
+   *
+   * @param event
+   */
+  public void onRootDispatchTouchEventListener(MotionEvent event)
+  {
+    try
+    {
+      if (!this.initialized)
+        return;
+
+      if (this.gestureTrace != null)
+        this.gestureTrace.record(GestureTrace.SCROLLER_ROOT, event);
+
+      if (this.frameMetricsListener != null)
+      {
+        this.frameMetrics.motionEventCount++;
+        postMetricsCallback();
+      }
+
+      if ((this.velocityTracker != null) && (event.getAction() != MotionEvent.ACTION_DOWN))
+        this.velocityTracker.addMovement(event);
+
+      if (event.getAction() == MotionEvent.ACTION_UP)
+      {
+        // Determine how fast the finger was moving when it was released. The tracker
+        // goes back into the platform's pool until the next gesture starts.
+        float releaseVelocityY = 0;
+
+        if (this.velocityTracker != null)
+        {
+          this.velocityTracker.computeCurrentVelocity(1000, this.maxFlingVelocity);
+          releaseVelocityY = this.velocityTracker.getYVelocity();
+          this.velocityTracker.recycle();
+          this.velocityTracker = null;
+        }
+
+        touchUp(releaseVelocityY);
+      }
+      else if (event.getAction() == MotionEvent.ACTION_DOWN)
+      {
+        touchDown(event);
+
+        if (this.velocityTracker == null)
+          this.velocityTracker = VelocityTracker.obtain();
+        else
+          this.velocityTracker.clear();
+
+        this.velocityTracker.addMovement(event);
+      }
+
+      if ((event.getAction() == MotionEvent.ACTION_MOVE) && (this.engine.getActiveScroller() >= 0))
+      {
+        // Adjust the position of the scroller and header. The event may carry several samples that
+        // were batched since the previous event. Walk through all of them so that each one passes the
+        // touch slop filter and the direction is tracked sample by sample, not just for the whole batch.
+        int historySize = event.getHistorySize();
+
+        for (int i = 0; i <= historySize; i++)
+        {
+          float sampleY = (i < historySize) ? event.getHistoricalY(i) : event.getY();
+          float delta = this.engine.onTouchMove(sampleY);
+
+          // Moves within the touch slop are jitter and don't reach the header or the scrollers.
+          if (delta != 0)
+            addMotion(delta);
+        }
+
+        if (this.pendingScrollDelta == 0)
+          return;
+
+        if (this.coalesceMotion)
+        {
+          if (!this.frameCallbackPosted)
+          {
+            this.frameCallbackPosted = true;
+            this.choreographer.postFrameCallback(this.frameCallback);
+          }
+        }
+        else
+        {
+          applyPendingMotion();
+        }
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onRootDispatchTouchEventListener: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Starts a gesture with the scroller located under the finger.
+   */
+  void touchDown(MotionEvent event)
+  {
+    grabHeader();
+    syncGeometry();
+    this.engine.setActiveScroller(hitTestScrollers(event.getRawX(), event.getRawY()));
+    this.engine.onTouchDown(event.getY());
+
+    // Discard motion left over from a gesture that never received an ACTION_UP.
+    cancelPendingMotion();
+    this.pendingScrollDelta = 0;
+  }
+
+
+  /**
+   * Ends a gesture that was released at the given velocity.
+   */
+  void touchUp(float releaseVelocityY)
+  {
+    // Apply whatever motion is still waiting for the next frame.
+    flushPendingMotion();
+
+    // Reposition the header if necessary.
+    this.engine.onTouchUp(releaseVelocityY);
+
+    // The header is at rest unless a snap animation has just been started.
+    if (!this.engine.isHeaderAnimating())
+      restoreLayerTypes();
+  }
+
+
+  /**
+   * Starts a scroll that is reported by the content rather than by motion events, such as a nested scroll from
+   * JBHeaderScrollLayout or a RecyclerView scroll. Returns false if the scrolling view isn't a registered
+   * scroller or located inside one.
+   */
+  boolean startContentScroll(View target)
+  {
+    if (!this.initialized)
+      return false;
+
+    int scroller = -1;
+    View v = target;
+
+    while ((v != null) && (scroller < 0))
+    {
+      scroller = indexOfScroller(v);
+      ViewParent parent = v.getParent();
+      v = (parent instanceof View) ? (View) parent : null;
+    }
+
+    if (scroller < 0)
+      return false;
+
+    grabHeader();
+    syncGeometry();
+    this.engine.setActiveScroller(scroller);
+    this.engine.onTouchDown(0);
+    stopNestedFling();
+    this.nestedFlingVelocityY = 0;
+    this.nestedPreScrollRemainder = 0;
+    return true;
+  }
+
+
+  /**
+   * Moves the header by as much of a nested pre-scroll as it can take and returns the number of pixels consumed.
+   * dy is positive when the content is about to scroll up. The header is only hidden while the content can
+   * still scroll up, so it stays in place when the content is at its end or too short to scroll.
+   */
+  int onNestedPreScroll(View target, int dy)
+  {
+    if ((dy == 0) || (this.engine.getActiveScroller() < 0) || this.engine.isHeaderAnimating())
+      return 0;
+
+    float available;
+
+    if (dy > 0)
+      available = target.canScrollVertically(1) ? this.engine.getHeaderY() + this.engine.getHeaderHeight() : 0;
+    else
+      available = -this.engine.getHeaderY();
+
+    float distance = Math.min(Math.abs(dy), available);
+
+    if (distance <= 0)
+      return 0;
+
+    applyMotion((dy > 0) ? -distance : distance);
+
+    // Only whole pixels can be reported as consumed. What is left over is added to the next pre-scroll, so that
+    // the consumed distances add up to how far the header has moved.
+    float moved = ((dy > 0) ? distance : -distance) + this.nestedPreScrollRemainder;
+    int consumed = Math.round(moved);
+
+    if (dy > 0)
+      consumed = Math.max(Math.min(consumed, dy), 0);
+    else
+      consumed = Math.min(Math.max(consumed, dy), 0);
+
+    this.nestedPreScrollRemainder = moved - consumed;
+    return consumed;
+  }
+
+
+  /**
+   * Records a fling of the content that is about to start. velocityY is positive when the content flings up.
+   */
+  void onNestedPreFling(View target, float velocityY)
+  {
+    this.nestedFlingVelocityY = velocityY;
+    this.nestedFlingTarget = target;
+  }
+
+
+  /**
+   * Ends a scroll that was started with startContentScroll. If the content was flung and the header can still
+   * move in that direction, the header follows the fling first. Otherwise it snaps as it would after the finger
+   * was released, using the fling velocity.
+   */
+  void stopContentScroll()
+  {
+    if (this.engine.isFingerUp())
+      return;
+
+    float headerY = this.engine.getHeaderY();
+
+    if ((this.nestedFlingTarget != null) && (((this.nestedFlingVelocityY > 0) && (headerY > -this.engine.getHeaderHeight())) || ((this.nestedFlingVelocityY < 0) && (headerY < 0))))
+    {
+      startNestedFling();
+      return;
+    }
+
+    this.nestedFlingTarget = null;
+
+    // A fling of the content up corresponds to the finger moving up, which the engine treats as negative.
+    touchUp(-this.nestedFlingVelocityY);
+  }
+
+
+  /**
+   * Moves the header along with a fling of the content. The content performs the fling itself, so the header
+   * follows a fling with the same velocity and the platform's default deceleration, which is what the content
+   * scrolls by.
+   */
+  private void startNestedFling()
+  {
+    if (this.nestedFlingScroller == null)
+      this.nestedFlingScroller = new OverScroller(this.vHeader.getContext());
+
+    if (this.choreographer == null)
+      this.choreographer = Choreographer.getInstance();
+
+    this.nestedFlingScroller.fling(0, 0, 0, (int) this.nestedFlingVelocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    this.nestedFlingLastY = 0;
+
+    this.choreographer.removeFrameCallback(this.nestedFlingFrameCallback);
+    this.choreographer.postFrameCallback(this.nestedFlingFrameCallback);
+  }
+
+
+  /**
+   * Stops following a fling of the content without snapping the header, such as when the content is touched again.
+   */
+  private void stopNestedFling()
+  {
+    this.nestedFlingTarget = null;
+
+    if ((this.nestedFlingScroller == null) || this.nestedFlingScroller.isFinished())
+      return;
+
+    this.nestedFlingScroller.abortAnimation();
+    this.choreographer.removeFrameCallback(this.nestedFlingFrameCallback);
+  }
+
+
+  /**
+   * Moves the header by the distance the content's fling has covered since the previous frame. Once the header is
+   * fully hidden or shown, the content can't scroll any further or the fling has ended, the header snaps with
+   * the velocity the fling has left.
+   */
+  private Choreographer.FrameCallback nestedFlingFrameCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        OverScroller scroller = nestedFlingScroller;
+        boolean flinging = scroller.computeScrollOffset();
+        int dy = scroller.getCurrY() - nestedFlingLastY;
+        nestedFlingLastY = scroller.getCurrY();
+
+        if (dy != 0)
+          applyMotion(-dy);
+
+        float headerY = engine.getHeaderY();
+        boolean up = nestedFlingVelocityY > 0;
+        boolean headerAtEdge = up ? (headerY <= -engine.getHeaderHeight()) : (headerY >= 0);
+
+        if (flinging && !headerAtEdge && nestedFlingTarget.canScrollVertically(up ? 1 : -1))
+        {
+          choreographer.postFrameCallback(this);
+          return;
+        }
+
+        float velocity = flinging ? scroller.getCurrVelocity() : 0;
+        scroller.abortAnimation();
+        nestedFlingTarget = null;
+
+        // A fling of the content up corresponds to the finger moving up, which the engine treats as negative.
+        touchUp(up ? -velocity : velocity);
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Moves only the header by the distance the content has scrolled. dy is positive when the content has
+   * scrolled up. The scroller itself stays where it is laid out.
+   */
+  void onContentScrolled(int dy)
+  {
+    if ((dy == 0) || (this.engine.getActiveScroller() < 0))
+      return;
+
+    if (!this.engine.isHeaderAnimating())
+      promoteToHardwareLayers();
+
+    this.engine.applyHeaderMotion(-dy);
+  }
+
+
+  /**
+   * Brings the engine's copy of the header and scroller positions up to date. This is only done once per
+   * gesture so that anything the client has moved in the meantime is picked up, while motion events are
+   * processed without querying the views.
+   */
+  private void syncGeometry()
+  {
+    if (!this.engine.isHeaderAnimating())
+      this.engine.setHeaderY(this.vHeader.getY());
+
+    pruneScrollers();
+
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      ScrollableContent scrollerContent = scrollerAt(i);
+
+      if (scrollerContent != null)
+        this.engine.setScrollerTop(i, scrollerContent.vContentArea.getY());
+    }
+  }
+
+
+  /**
+   * Moves the header and scrollers by the signed distance the finger has moved. A negative distance
+   * means the user is scrolling up.
+   */
+  void applyMotion(float delta)
+  {
+    if ((delta != 0) && !this.engine.isHeaderAnimating() && !this.engine.isFingerUp())
+      promoteToHardwareLayers();
+
+    if (this.frameMetricsListener == null)
+    {
+      this.engine.applyMotion(delta);
+      deliverBatchReposition();
+      return;
+    }
+
+    long startNanos = System.nanoTime();
+    this.engine.applyMotion(delta);
+    deliverBatchReposition();
+    this.frameMetrics.scrollSyncNanos += System.nanoTime() - startNanos;
+    this.frameMetrics.scrollSyncCount++;
+  }
+
+
+  /**
+   * Hands the tops of all scrollers to the batch listener if any of them has been moved since the last call.
+   */
+  private void deliverBatchReposition()
+  {
+    if (!this.batchPending)
+      return;
+
+    this.batchPending = false;
+
+    for (int i = 0; i < this.scrollerCount; i++)
+      this.batchTops[i] = this.engine.getScrollerTop(i);
+
+    this.repositionCallCount++;
+
+    if (this.frameMetricsListener == null)
+    {
+      this.batchListener.onReposition(this.batchTops, this.scrollerCount, this.engine.isScrollingUp(), this.engine.getScrollDelta());
+      return;
+    }
+
+    long startNanos = System.nanoTime();
+    this.batchListener.onReposition(this.batchTops, this.scrollerCount, this.engine.isScrollingUp(), this.engine.getScrollDelta());
+    this.frameMetrics.batchRepositionNanos += System.nanoTime() - startNanos;
+    this.frameMetrics.batchRepositionCount++;
+  }
+
+
+  /**
+   * Adds a signed distance to the motion waiting to be applied. Distances in the same direction are summed:
+   * the header and the scrollers are clamped to the same limits whether they are moved in one step or in
+   * several, so the sum moves them exactly as far. Clamping in opposite directions doesn't cancel out though,
+   * so the distance summed so far is applied before one in the other direction is added.
+   */
+  private void addMotion(float delta)
+  {
+    if ((this.pendingScrollDelta != 0) && ((this.pendingScrollDelta < 0) != (delta < 0)))
+      applyPendingMotion();
+
+    this.pendingScrollDelta += delta;
+  }
+
+
+  /**
+   * Moves the header and scrollers by the distance that addMotion has summed.
+   */
+  private void applyPendingMotion()
+  {
+    float delta = this.pendingScrollDelta;
+    this.pendingScrollDelta = 0;
+
+    if ((delta != 0) && (this.engine.getActiveScroller() >= 0))
+      applyMotion(delta);
+  }
+
+
+  /**
+   * Immediately applies any motion that has been accumulated for the next frame.
+   */
+  private void flushPendingMotion()
+  {
+    if (!this.frameCallbackPosted)
+      return;
+
+    cancelPendingMotion();
+    this.frameCallback.doFrame(0);
+  }
+
+
+  /**
+   * Drops the frame callback. The accumulated distance is kept until the next frame or flush consumes it.
+   */
+  private void cancelPendingMotion()
+  {
+    if (this.frameCallbackPosted)
+    {
+      this.choreographer.removeFrameCallback(this.frameCallback);
+      this.frameCallbackPosted = false;
+    }
+  }
+
+
+  /**
+   * Applies the motion accumulated since the previous frame.
+   */
+  private Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        frameCallbackPosted = false;
+        applyPendingMotion();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Makes sure that the metrics of the current frame are reported at the start of the next one.
+   */
+  private void postMetricsCallback()
+  {
+    if (!this.metricsCallbackPosted)
+    {
+      this.metricsCallbackPosted = true;
+      this.choreographer.postFrameCallback(this.metricsFrameCallback);
+    }
+  }
+
+
+  /**
+   * Reports the work done since the previous frame to the metrics listener. While the finger is down or the
+   * header is animating, the callback is posted for every frame so that dropped frames can be detected from
+   * the time between consecutive frames.
+   */
+  private Choreographer.FrameCallback metricsFrameCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        metricsCallbackPosted = false;
+
+        if (frameMetricsListener == null)
+          return;
+
+        FrameMetrics metrics = frameMetrics;
+        metrics.frameTimeNanos = frameTimeNanos;
+        metrics.frameIntervalNanos = (prevMetricsFrameTimeNanos != 0) ? frameTimeNanos - prevMetricsFrameTimeNanos : 0;
+        metrics.frameOverrun = metrics.frameIntervalNanos > (frameBudgetNanos * 3 / 2);
+
+        frameMetricsListener.onFrameMetrics(metrics);
+        metrics.reset();
+
+        if (!engine.isFingerUp() || engine.isHeaderAnimating())
+        {
+          prevMetricsFrameTimeNanos = frameTimeNanos;
+          postMetricsCallback();
+        }
+        else
+        {
+          prevMetricsFrameTimeNanos = 0;
+        }
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Moves a scroller's top edge to newTop. In translation mode the scroller is moved here without
+   * requesting a layout. The client is then notified through onReposition.
+   */
+  private void repositionScroller(int scroller, float newTop)
+  {
+    ScrollableContent scrollerContent = scrollerAt(scroller);
+
+    if (scrollerContent == null)
+      return;
+
+    if (this.repositionMode == REPOSITION_MODE_TRANSLATION)
+    {
+      View vScroller = scrollerContent.vContentArea;
+      float translationY = newTop - vScroller.getTop();
+      vScroller.setTranslationY(translationY);
+
+      // Clip whatever has been pushed below the scroller's laid out bottom edge so that it
+      // doesn't draw over views placed beneath the scroller.
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+      {
+        int clipBottom = vScroller.getHeight() - (int) Math.max(translationY, 0);
+        scrollerContent.clipBounds.set(0, 0, vScroller.getWidth(), clipBottom);
+        vScroller.setClipBounds(scrollerContent.clipBounds);
+      }
+    }
+
+    if (this.batchListener != null)
+    {
+      this.batchPending = true;
+      return;
+    }
+
+    if (scrollerContent.iJBHeaderScroll != null)
+    {
+      this.repositionCallCount++;
+
+      if (this.frameMetricsListener == null)
+      {
+        scrollerContent.iJBHeaderScroll.onReposition(newTop, this.engine.isScrollingUp(), this.engine.getScrollDelta());
+        return;
+      }
+
+      long startNanos = System.nanoTime();
+      scrollerContent.iJBHeaderScroll.onReposition(newTop, this.engine.isScrollingUp(), this.engine.getScrollDelta());
+      this.frameMetrics.repositionNanos[scroller] += System.nanoTime() - startNanos;
+      this.frameMetrics.repositionCounts[scroller]++;
+    }
+  }
+
+
+  /**
+   * Animates the header up to be hidden.
+   */
+  public void animateHeaderUp()
+  {
+    try
+    {
+      stopHeaderAnimation();
+
+      if (this.engine.getHeaderY() == this.engine.getScrollerMinTopY())
+        return;
+
+      this.engine.onHeaderAnimationStart(true);
+      promoteToHardwareLayers();
+      startHeaderAnimation(-this.engine.getHeaderHeight());
+
+      ScrollableContent scrollerContent = activeScroller();
+
+      if ((scrollerContent != null) && (scrollerContent.iJBHeaderScroll != null))
+      {
+        this.afterAnimationCallCount++;
+        scrollerContent.iJBHeaderScroll.onHeaderAfterAnimation(true, this.engine.getScrollDelta());
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "animateHeaderUp: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Animates the header down to be visible.
+   */
+  public void animateHeaderDown()
+  {
+    try
+    {
+      stopHeaderAnimation();
+
+      if (this.engine.getHeaderY() == this.engine.getScrollerMaxTopY())
+        return;
+
+      this.engine.onHeaderAnimationStart(false);
+      promoteToHardwareLayers();
+      startHeaderAnimation(0);
+
+      ScrollableContent scrollerContent = activeScroller();
+
+      if ((scrollerContent != null) && (scrollerContent.iJBHeaderScroll != null))
+      {
+        this.afterAnimationCallCount++;
+        scrollerContent.iJBHeaderScroll.onHeaderAfterAnimation(false, this.engine.getScrollDelta());
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "animateHeaderDown: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Animates the header from its current position to targetY. Headers in a group are animated by the group.
+   */
+  private void startHeaderAnimation(float targetY)
+  {
+    if (this.group != null)
+    {
+      this.group.animateHeader(this, targetY);
+      return;
+    }
+
+    if (this.snapAnimationMode == SNAP_ANIMATION_RENDER_THREAD)
+    {
+      startRenderThreadAnimation(targetY);
+      return;
+    }
+
+    if (this.choreographer == null)
+      this.choreographer = Choreographer.getInstance();
+
+    // The spring continues with the velocity of the finger that has just been released or, if it is being
+    // redirected, with the velocity it had.
+    this.snapSpring.start(this.vHeader.getY(), this.engine.getReleaseVelocityY() + this.interruptedVelocityY, targetY);
+    this.interruptedVelocityY = 0;
+    this.snapStartNanos = System.nanoTime();
+
+    this.choreographer.removeFrameCallback(this.snapFrameCallback);
+    this.choreographer.postFrameCallback(this.snapFrameCallback);
+  }
+
+
+  /**
+   * Animates the header to targetY with its ViewPropertyAnimator. The animators are given neither listeners nor
+   * actions, since the platform only hands an animator without them to the RenderThread. JBHeaderScroll does
+   * nothing until the animation has ended, which renderThreadSnapEndCallback determines from its duration. The
+   * hardware layer is set up here rather than with withLayer for the same reason, and so that it stays in place
+   * until the snap has been handled.
+   */
+  private void startRenderThreadAnimation(float targetY)
+  {
+    float distance = Math.abs(targetY - this.vHeader.getY());
+    long duration = Math.max((long) (HeaderScrollEngine.HEADER_ANIMATION_DURATION * distance / Math.max(this.engine.getHeaderHeight(), 1)), 1);
+
+    if (!this.hardwareLayersActive)
+    {
+      this.hardwareLayersActive = true;
+      this.headerPrevLayerType = this.vHeader.getLayerType();
+      this.vHeader.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+    }
+
+    this.vHeader.animate().translationY(targetY - this.vHeader.getTop()).setDuration(duration).setInterpolator(this.renderThreadSnapInterpolator).start();
+
+    if (this.repositionMode == REPOSITION_MODE_TRANSLATION)
+    {
+      for (int i = 0; i < this.scrollerCount; i++)
+      {
+        ScrollableContent scrollerContent = scrollerAt(i);
+
+        if (scrollerContent == null)
+          continue;
+
+        float top = this.engine.getScrollerTop(i);
+        float targetTop = this.engine.getScrollerTopAfterAnimation(i, targetY);
+
+        if (targetTop == top)
+          continue;
+
+        View vScroller = scrollerContent.vContentArea;
+
+        // Clip for whichever end of the animation shows more of the scroller, so that no gap opens at its bottom.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+        {
+          int clipBottom = vScroller.getHeight() - (int) Math.max(Math.min(top, targetTop) - vScroller.getTop(), 0);
+          scrollerContent.clipBounds.set(0, 0, vScroller.getWidth(), clipBottom);
+          vScroller.setClipBounds(scrollerContent.clipBounds);
+        }
+
+        vScroller.animate().translationY(targetTop - vScroller.getTop()).setDuration(duration).setInterpolator(this.renderThreadSnapInterpolator).start();
+      }
+    }
+
+    this.renderThreadSnapRunning = true;
+    this.renderThreadSnapTargetY = targetY;
+    this.renderThreadSnapDurationNanos = duration * 1000000;
+    this.renderThreadSnapEndNanos = 0;
+
+    if (this.choreographer == null)
+      this.choreographer = Choreographer.getInstance();
+
+    this.choreographer.removeFrameCallback(this.renderThreadSnapEndCallback);
+    this.choreographer.postFrameCallback(this.renderThreadSnapEndCallback);
+  }
+
+
+  /**
+   * Stops the ViewPropertyAnimators of the header and the scrollers.
+   */
+  private void cancelRenderThreadAnimation()
+  {
+    this.renderThreadSnapRunning = false;
+    this.choreographer.removeFrameCallback(this.renderThreadSnapEndCallback);
+    this.vHeader.animate().cancel();
+
+    if (this.repositionMode == REPOSITION_MODE_TRANSLATION)
+    {
+      for (int i = 0; i < this.scrollerCount; i++)
+      {
+        ScrollableContent scrollerContent = scrollerAt(i);
+
+        if (scrollerContent != null)
+          scrollerContent.vContentArea.animate().cancel();
+      }
+    }
+  }
+
+
+  /**
+   * Brings the engine and the client up to date once the header has reached its target. The animators are
+   * stopped in case they are still running and the header and the scrollers are set to their targets, so the
+   * result doesn't depend on how far the RenderThread has got.
+   */
+  private void finishRenderThreadAnimation()
+  {
+    cancelRenderThreadAnimation();
+    applyAnimationFrame(this.renderThreadSnapTargetY);
+    onHeaderAnimationEnd();
+  }
+
+
+  /**
+   * Waits for the end of a snap that the RenderThread animates. The RenderThread starts the animation with the
+   * first frame drawn after it was started, so the end is timed from that frame. The callback is then posted again
+   * for when the animation's duration has elapsed, and again for every frame until it has.
+   */
+  private Choreographer.FrameCallback renderThreadSnapEndCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        if (!renderThreadSnapRunning)
+          return;
+
+        if (renderThreadSnapEndNanos == 0)
+        {
+          renderThreadSnapEndNanos = frameTimeNanos + renderThreadSnapDurationNanos;
+          choreographer.postFrameCallbackDelayed(this, renderThreadSnapDurationNanos / 1000000);
+          return;
+        }
+
+        if (frameTimeNanos < renderThreadSnapEndNanos)
+        {
+          choreographer.postFrameCallback(this);
+          return;
+        }
+
+        finishRenderThreadAnimation();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Moves the header to y during a snap animation, together with the scrollers that follow it.
+   */
+  void applyAnimationFrame(float y)
+  {
+    if (this.frameMetricsListener == null)
+    {
+      this.engine.onHeaderAnimationFrame(y);
+      deliverBatchReposition();
+      return;
+    }
+
+    // Timed like applyMotion, since the onReposition calls made here are counted as well.
+    long startNanos = System.nanoTime();
+    this.engine.onHeaderAnimationFrame(y);
+    deliverBatchReposition();
+    this.frameMetrics.scrollSyncNanos += System.nanoTime() - startNanos;
+    this.frameMetrics.scrollSyncCount++;
+  }
+
+
+  /**
+   * Stops a running header animation, leaving the header where it is.
+   */
+  private void stopHeaderAnimation()
+  {
+    if (this.group != null)
+    {
+      this.group.cancelAnimation(this);
+      return;
+    }
+
+    if (this.renderThreadSnapRunning)
+    {
+      // The platform has left the header wherever the animation was stopped. The scrollers that follow the
+      // header are moved to match it, and the client receives their tops through onReposition.
+      cancelRenderThreadAnimation();
+      applyAnimationFrame(this.vHeader.getY());
+      onHeaderAnimationEnd();
+      return;
+    }
+
+    if (!this.snapSpring.isRunning())
+      return;
+
+    this.interruptedVelocityY = this.snapSpring.getVelocity(secondsSinceSnapStart(System.nanoTime()));
+    this.snapSpring.stop();
+    this.choreographer.removeFrameCallback(this.snapFrameCallback);
+    onHeaderAnimationEnd();
+  }
 
+
+  /**
+   * Stops the header where it is when a finger touches it while it snaps, so that it can be dragged from there.
+   */
+  private void grabHeader()
+  {
+    stopHeaderAnimation();
+    this.interruptedVelocityY = 0;
+  }
+
+
+  private float secondsSinceSnapStart(long nanos)
+  {
+    return Math.max(nanos - this.snapStartNanos, 0) / 1000000000f;
+  }
+
+
+  /**
+   * Jumps a running header animation to its end. Used when events are replayed faster than frames are rendered.
+   */
+  void endHeaderAnimation()
+  {
+    if (this.group != null)
+    {
+      this.group.endAnimation();
+      return;
+    }
+
+    if (this.renderThreadSnapRunning)
+    {
+      finishRenderThreadAnimation();
+      return;
+    }
+
+    if (!this.snapSpring.isRunning())
+      return;
+
+    this.snapSpring.stop();
+    this.choreographer.removeFrameCallback(this.snapFrameCallback);
+    applyAnimationFrame(this.snapSpring.getTarget());
+    onHeaderAnimationEnd();
+  }
+
+
+  /**
+   * Must be called when the header has stopped animating, whether the animation ended or was canceled.
+   */
+  void onHeaderAnimationEnd()
+  {
+    this.engine.onHeaderAnimationEnd(this.vHeader.getY());
+
+    if (this.engine.isFingerUp())
+      restoreLayerTypes();
+  }
+
+
+  HeaderScrollEngine getEngine()
+  {
+    return this.engine;
+  }
+
+
+  boolean isInitialized()
+  {
+    return this.initialized;
+  }
+
+
+  /**
+   * Renders the header, and if requested the scrollers, into hardware layers until restoreLayerTypes is called.
+   */
+  private void promoteToHardwareLayers()
+  {
+    if ((this.hardwareLayerMode == HARDWARE_LAYER_NONE) || this.hardwareLayersActive)
+      return;
+
+    this.hardwareLayersActive = true;
+    this.headerPrevLayerType = this.vHeader.getLayerType();
+    this.vHeader.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+    if ((this.hardwareLayerMode == HARDWARE_LAYER_HEADER_AND_SCROLLERS) && (this.repositionMode == REPOSITION_MODE_TRANSLATION))
+    {
+      for (int i = 0; i < this.scrollerCount; i++)
+      {
+        ScrollableContent scrollerContent = scrollerAt(i);
+
+        if (scrollerContent == null)
+          continue;
+
+        scrollerContent.prevLayerType = scrollerContent.vContentArea.getLayerType();
+        scrollerContent.vContentArea.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        scrollerContent.layerPromoted = true;
+      }
+    }
+  }
+
+
+  /**
+   * Restores the layer types that were in use before promoteToHardwareLayers was called.
+   */
+  private void restoreLayerTypes()
+  {
+    if (!this.hardwareLayersActive)
+      return;
+
+    this.hardwareLayersActive = false;
+    this.vHeader.setLayerType(this.headerPrevLayerType, null);
+
+    for (int i = 0; i < this.scrollerCount; i++)
+    {
+      ScrollableContent scrollerContent = scrollerAt(i);
+
+      if ((scrollerContent != null) && scrollerContent.layerPromoted)
+      {
+        scrollerContent.vContentArea.setLayerType(scrollerContent.prevLayerType, null);
+        scrollerContent.layerPromoted = false;
+      }
+    }
+  }
+
+
+  /**
+   * Advances the snap spring once per frame.
+   */
+  private Choreographer.FrameCallback snapFrameCallback = new Choreographer.FrameCallback()
+  {
     @Override
-    public void onAnimationRepeat(Animator animation)
+    public void doFrame(long frameTimeNanos)
     {
+      try
+      {
+        // A release that carries the spring away from its target mustn't move the header beyond its range.
+        float y = snapSpring.getPosition(secondsSinceSnapStart(frameTimeNanos));
+        applyAnimationFrame(Math.max(-engine.getHeaderHeight(), Math.min(y, 0)));
+
+        if (snapSpring.isRunning())
+          choreographer.postFrameCallback(this);
+        else
+          onHeaderAnimationEnd();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
     }
   };
 
 
+  /**
+   * Applies the engine's decisions to the header and the registered scrollers.
+   */
+  private class EngineHost implements HeaderScrollEngine.Host
+  {
+    @Override
+    public void setHeaderY(float y)
+    {
+      vHeader.setY(y);
+    }
+
+    @Override
+    public void repositionScroller(int scroller, float top)
+    {
+      JBHeaderScroll.this.repositionScroller(scroller, top);
+    }
+
+    @Override
+    public int onHeaderBeforeAnimation(int scroller)
+    {
+      ScrollableContent scrollerContent = scrollerAt(scroller);
+      IJBHeaderScroll iJBHeaderScroll = (scrollerContent != null) ? scrollerContent.iJBHeaderScroll : null;
+
+      if (iJBHeaderScroll == null)
+        return ANIMATE_HEADER_USE_DEFAULT;
+
+      beforeAnimationCallCount++;
+
+      if (frameMetricsListener == null)
+        return iJBHeaderScroll.onHeaderBeforeAnimation(engine.isScrollingUp(), engine.getScrollDelta());
+
+      long startNanos = System.nanoTime();
+      int animateDirection = iJBHeaderScroll.onHeaderBeforeAnimation(engine.isScrollingUp(), engine.getScrollDelta());
+      frameMetrics.beforeAnimationNanos[scroller] += System.nanoTime() - startNanos;
+      frameMetrics.beforeAnimationCounts[scroller]++;
+      return animateDirection;
+    }
+
+    @Override
+    public void animateHeaderUp()
+    {
+      JBHeaderScroll.this.animateHeaderUp();
+    }
+
+    @Override
+    public void animateHeaderDown()
+    {
+      JBHeaderScroll.this.animateHeaderDown();
+    }
+  }
+
+
+  public interface IFrameMetricsListener
+  {
+    /**
+     * Called at the start of every frame with the work done since the previous frame. The metrics object is
+     * reused and must not be kept.
+     */
+    void onFrameMetrics(FrameMetrics metrics);
+  }
+
+
   public interface IJBHeaderScroll
   {
     void onReposition(float top, boolean scrollingUp, float scrollDelta);
@@ -603,11 +2221,39 @@ public class JBHeaderScroll
   }
 
 
-  private class ScrollableContent
+  public interface IJBHeaderScrollBatch
+  {
+    /**
+     * Called with the top positions of all registered scrollers after the header has moved any of them.
+     *
+     * @param tops  The top position of each scroller, indexed in the order the scrollers were registered. An
+     *              unregistered or collected scroller is removed from that order, so the scrollers registered
+     *              after it move down by one index. The array is reused and must not be kept.
+     * @param count The number of registered scrollers. The array may be longer.
+     */
+    void onReposition(float[] tops, int count, boolean scrollingUp, float scrollDelta);
+  }
+
+
+  /**
+   * A registered scroller.
+   * <p/>
+   * Ownership is one way: the scroller view holds its ScrollableContent strongly in the tag
+   * R.id.jbheaderscroll_scroller, which keeps the client's callback reachable for as long as the view is, while
+   * JBHeaderScroll only holds it through a WeakReference. A view that is registered with several JBHeaderScrolls
+   * keeps all of their ScrollableContents in a chain linked through next. The class is static so that the view
+   * doesn't keep the JBHeaderScroll itself reachable.
+   */
+  private static class ScrollableContent
   {
     public View vContentArea;
     public IJBHeaderScroll iJBHeaderScroll;
     public float originalHeight;
+    public Rect clipBounds = new Rect();
+    public int bottomInset;
+    public int prevLayerType;
+    public boolean layerPromoted;
+    private ScrollableContent next;
 
     public ScrollableContent(View vContentArea, IJBHeaderScroll iJBHeaderScroll)
     {
@@ -615,5 +2261,37 @@ public class JBHeaderScroll
       this.iJBHeaderScroll = iJBHeaderScroll;
       this.originalHeight = vContentArea.getHeight();
     }
+
+    /**
+     * Makes the scroller view the owner of this instance.
+     */
+    public void attachToView()
+    {
+      this.next = (ScrollableContent) this.vContentArea.getTag(R.id.jbheaderscroll_scroller);
+      this.vContentArea.setTag(R.id.jbheaderscroll_scroller, this);
+    }
+
+    /**
+     * Releases this instance from the scroller view, leaving those of other JBHeaderScrolls attached.
+     */
+    public void detachFromView()
+    {
+      ScrollableContent content = (ScrollableContent) this.vContentArea.getTag(R.id.jbheaderscroll_scroller);
+
+      if (content == this)
+      {
+        this.vContentArea.setTag(R.id.jbheaderscroll_scroller, this.next);
+      }
+      else
+      {
+        while ((content != null) && (content.next != this))
+          content = content.next;
+
+        if (content != null)
+          content.next = this.next;
+      }
+
+      this.next = null;
+    }
   }
 }
@@ -0,0 +1,512 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import java.util.Arrays;
+
+/**
+ * Coordinates several headers that are nested inside each other's scrollers or stacked above one another, such
+ * as a toolbar above a list that has its own collapsible header.
+ * <p/>
+ * The group owns a tree of headers. Each header is a JBHeaderScroll that is added with addHeader and whose
+ * scrollers are registered on it as usual. A header that sits inside a scroller of another header is added with
+ * that header as its parent. The root events are sent once to the group's onRootDispatchTouchEventListener
+ * instead of to every header.
+ * <p/>
+ * For each gesture the group tracks the velocity once and splits the distance the finger moves across the
+ * touched headers in order: scrolling up hides the outermost header first and then the ones inside it,
+ * scrolling down shows the innermost header first. When the finger is released, every header that needs to snap
+ * is moved by its own SnapSpring, started from the release velocity just like a header that isn't in a group. All
+ * springs are advanced by a single Choreographer frame callback.
+ */
+public class JBHeaderScrollGroup
+{
+  private final String LOG_TAG = "JBHeaderScrollGroup";
+
+  private JBHeaderScroll[] headers = new JBHeaderScroll[4];
+  private int[] parents = new int[4];
+  private int headerCount;
+
+  // The touched headers from the innermost to the outermost. Determined with the first move of a gesture.
+  private int[] path = new int[4];
+  private int pathLength = -1;
+  private final TouchMotionFilter touchMotionFilter = new TouchMotionFilter();
+
+  private VelocityTracker velocityTracker;
+  private final int maxFlingVelocity;
+
+  private Choreographer choreographer;
+  private JBHeaderScroll[] animHeaders = new JBHeaderScroll[4];
+  private SnapSpring[] animSprings = { new SnapSpring(), new SnapSpring(), new SnapSpring(), new SnapSpring() };
+  private long[] animStartNanos = new long[4];
+  private int animCount;
+  private boolean collectingAnimations;
+
+
+  public JBHeaderScrollGroup(Context context)
+  {
+    ViewConfiguration viewConfiguration = ViewConfiguration.get(context);
+    this.maxFlingVelocity = viewConfiguration.getScaledMaximumFlingVelocity();
+    this.touchMotionFilter.setTouchSlop(viewConfiguration.getScaledTouchSlop());
+  }
+
+
+  /**
+   * Adds a header that isn't inside any other header's scroller.
+   *
+   * @param vHeader The view that will be scrolled into or out of view.
+   * @param yOffset See the JBHeaderScroll constructor.
+   * @return The JBHeaderScroll for the header. Register the header's scrollers on it.
+   */
+  public JBHeaderScroll addHeader(View vHeader, int yOffset)
+  {
+    return addHeader(vHeader, yOffset, null);
+  }
+
+
+  /**
+   * Adds a header that is located inside a scroller of another header in the group.
+   *
+   * @param vHeader The view that will be scrolled into or out of view.
+   * @param yOffset See the JBHeaderScroll constructor.
+   * @param parent  The header whose scroller contains this header, or null if it has none.
+   * @return The JBHeaderScroll for the header. Register the header's scrollers on it.
+   */
+  public JBHeaderScroll addHeader(View vHeader, int yOffset, JBHeaderScroll parent)
+  {
+    JBHeaderScroll jbHeaderScroll = new JBHeaderScroll(vHeader, yOffset);
+    jbHeaderScroll.group = this;
+
+    if (this.headerCount == this.headers.length)
+    {
+      int capacity = this.headerCount * 2;
+      this.headers = Arrays.copyOf(this.headers, capacity);
+      this.parents = Arrays.copyOf(this.parents, capacity);
+      this.path = Arrays.copyOf(this.path, capacity);
+      this.animHeaders = Arrays.copyOf(this.animHeaders, capacity);
+      this.animStartNanos = Arrays.copyOf(this.animStartNanos, capacity);
+      this.animSprings = Arrays.copyOf(this.animSprings, capacity);
+
+      for (int i = this.headerCount; i < capacity; i++)
+        this.animSprings[i] = new SnapSpring();
+    }
+
+    // A parent is always added before its children, so its index is lower.
+    this.parents[this.headerCount] = indexOfHeader(parent);
+    this.headers[this.headerCount++] = jbHeaderScroll;
+    return jbHeaderScroll;
+  }
+
+
+  private int indexOfHeader(JBHeaderScroll jbHeaderScroll)
+  {
+    for (int i = 0; i < this.headerCount; i++)
+    {
+      if (this.headers[i] == jbHeaderScroll)
+        return i;
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * Receives all the motion events for every header in the group. See
+   * JBHeaderScroll.onRootDispatchTouchEventListener, which must not be called for headers in a group.
+   */
+  public void onRootDispatchTouchEventListener(MotionEvent event)
+  {
+    try
+    {
+      if ((this.velocityTracker != null) && (event.getAction() != MotionEvent.ACTION_DOWN))
+        this.velocityTracker.addMovement(event);
+
+      if (event.getAction() == MotionEvent.ACTION_UP)
+      {
+        float releaseVelocityY = 0;
+
+        if (this.velocityTracker != null)
+        {
+          this.velocityTracker.computeCurrentVelocity(1000, this.maxFlingVelocity);
+          releaseVelocityY = this.velocityTracker.getYVelocity();
+          this.velocityTracker.recycle();
+          this.velocityTracker = null;
+        }
+
+        // The headers only request their snap animations here. They are all started together afterwards.
+        this.collectingAnimations = true;
+
+        for (int i = 0; i < this.headerCount; i++)
+        {
+          if (this.headers[i].isInitialized())
+            this.headers[i].touchUp(releaseVelocityY);
+        }
+
+        this.collectingAnimations = false;
+
+        if (this.animCount > 0)
+          startAnimation();
+      }
+      else if (event.getAction() == MotionEvent.ACTION_DOWN)
+      {
+        for (int i = 0; i < this.headerCount; i++)
+        {
+          if (this.headers[i].isInitialized())
+            this.headers[i].touchDown(event);
+        }
+
+        this.touchMotionFilter.onTouchDown(event.getY());
+        this.pathLength = -1;
+
+        if (this.velocityTracker == null)
+          this.velocityTracker = VelocityTracker.obtain();
+        else
+          this.velocityTracker.clear();
+
+        this.velocityTracker.addMovement(event);
+      }
+      else if (event.getAction() == MotionEvent.ACTION_MOVE)
+      {
+        // Each header has hit tested its scrollers on ACTION_DOWN, but a scroller that reports itself through
+        // onScrollerDispatchTouchEventListener takes precedence and only does so after the root has received
+        // ACTION_DOWN. The touched headers are therefore determined with the first move.
+        if (this.pathLength < 0)
+          findTouchedHeaders();
+
+        // Pass every sample batched into the event through the touch slop filter. Samples moving in the same
+        // direction are distributed together; a change of direction distributes what has been summed so far.
+        int historySize = event.getHistorySize();
+        float delta = 0;
+
+        for (int i = 0; i <= historySize; i++)
+        {
+          float sampleY = (i < historySize) ? event.getHistoricalY(i) : event.getY();
+          float sampleDelta = this.touchMotionFilter.onTouchMove(sampleY);
+
+          // Moves within the touch slop are jitter and don't reach the headers or the scrollers.
+          if (sampleDelta == 0)
+            continue;
+
+          if ((delta != 0) && ((delta < 0) != (sampleDelta < 0)))
+          {
+            distributeMotion(delta);
+            delta = 0;
+          }
+
+          delta += sampleDelta;
+        }
+
+        if (delta != 0)
+          distributeMotion(delta);
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onRootDispatchTouchEventListener: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Releases every header in the group. See JBHeaderScroll.release.
+   */
+  public void release()
+  {
+    try
+    {
+      cancelAnimation();
+
+      for (int i = 0; i < this.headerCount; i++)
+      {
+        this.headers[i].release();
+        this.headers[i] = null;
+      }
+
+      this.headerCount = 0;
+
+      if (this.velocityTracker != null)
+      {
+        this.velocityTracker.recycle();
+        this.velocityTracker = null;
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "release: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Builds the path of touched headers, starting with the innermost header whose scroller was touched and
+   * walking up the tree. Headers on the way whose scrollers weren't touched are left out.
+   */
+  private void findTouchedHeaders()
+  {
+    this.pathLength = 0;
+    int header = this.headerCount - 1;
+
+    while ((header >= 0) && !isTouched(header))
+      header--;
+
+    while (header >= 0)
+    {
+      if (isTouched(header))
+        this.path[this.pathLength++] = header;
+
+      header = this.parents[header];
+    }
+  }
+
+
+  private boolean isTouched(int header)
+  {
+    return this.headers[header].isInitialized() && (this.headers[header].getEngine().getActiveScroller() >= 0);
+  }
+
+
+  /**
+   * Splits the signed distance the finger has moved across the touched headers. Each header takes as much as it
+   * can still move in that direction. The last header in order receives whatever remains, so a group with a
+   * single header behaves exactly like a JBHeaderScroll on its own.
+   */
+  private void distributeMotion(float delta)
+  {
+    if (delta < 0)
+    {
+      // Scrolling up hides the outermost header first.
+      float remaining = -delta;
+
+      for (int i = this.pathLength - 1; (i >= 0) && (remaining > 0); i--)
+      {
+        HeaderScrollEngine engine = this.headers[this.path[i]].getEngine();
+        float portion = (i == 0) ? remaining : Math.min(remaining, engine.getHeaderY() + engine.getHeaderHeight());
+
+        if (portion > 0)
+        {
+          this.headers[this.path[i]].applyMotion(-portion);
+          remaining -= portion;
+        }
+      }
+    }
+    else
+    {
+      // Scrolling down shows the innermost header first.
+      float remaining = delta;
+
+      for (int i = 0; (i < this.pathLength) && (remaining > 0); i++)
+      {
+        HeaderScrollEngine engine = this.headers[this.path[i]].getEngine();
+        float portion = (i == this.pathLength - 1) ? remaining : Math.min(remaining, -engine.getHeaderY());
+
+        if (portion > 0)
+        {
+          this.headers[this.path[i]].applyMotion(portion);
+          remaining -= portion;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Snaps a header of the group from its current position to targetY. While the group is processing the release
+   * of a gesture, the animation only starts once every header has made its request.
+   */
+  void animateHeader(JBHeaderScroll jbHeaderScroll, float targetY)
+  {
+    int i = 0;
+
+    while ((i < this.animCount) && (this.animHeaders[i] != jbHeaderScroll))
+      i++;
+
+    if (i == this.animCount)
+      this.animHeaders[this.animCount++] = jbHeaderScroll;
+
+    // The spring continues with the velocity of the finger that has just been released or, if the header is being
+    // redirected, with the velocity its previous spring had when cancelAnimation stopped it.
+    float velocity = jbHeaderScroll.getEngine().getReleaseVelocityY() + jbHeaderScroll.interruptedVelocityY;
+    jbHeaderScroll.interruptedVelocityY = 0;
+
+    this.animSprings[i].start(jbHeaderScroll.vHeader.getY(), velocity, targetY);
+    this.animStartNanos[i] = System.nanoTime();
+
+    if (!this.collectingAnimations)
+      startAnimation();
+  }
+
+
+  private void startAnimation()
+  {
+    if (this.choreographer == null)
+      this.choreographer = Choreographer.getInstance();
+
+    this.choreographer.removeFrameCallback(this.animFrameCallback);
+    this.choreographer.postFrameCallback(this.animFrameCallback);
+  }
+
+
+  /**
+   * Stops the group's animation, leaving every header where it is.
+   */
+  void cancelAnimation()
+  {
+    finishAnimation(false);
+  }
+
+
+  /**
+   * Stops the animation of a single header, leaving it where it is. The other headers keep animating. The velocity
+   * the header had is kept so that a snap that is started right away, such as when the header is redirected,
+   * continues with it.
+   */
+  void cancelAnimation(JBHeaderScroll jbHeaderScroll)
+  {
+    for (int i = 0; i < this.animCount; i++)
+    {
+      if (this.animHeaders[i] != jbHeaderScroll)
+        continue;
+
+      SnapSpring spring = this.animSprings[i];
+      jbHeaderScroll.interruptedVelocityY = spring.getVelocity(secondsSince(this.animStartNanos[i], System.nanoTime()));
+      removeAnimation(i);
+      spring.stop();
+
+      if ((this.animCount == 0) && (this.choreographer != null))
+        this.choreographer.removeFrameCallback(this.animFrameCallback);
+
+      jbHeaderScroll.onHeaderAnimationEnd();
+      return;
+    }
+  }
+
+
+  /**
+   * Moves every animating header to its target and ends the animation.
+   */
+  void endAnimation()
+  {
+    finishAnimation(true);
+  }
+
+
+  private void finishAnimation(boolean moveToTarget)
+  {
+    if (this.animCount == 0)
+      return;
+
+    if (this.choreographer != null)
+      this.choreographer.removeFrameCallback(this.animFrameCallback);
+
+    while (this.animCount > 0)
+    {
+      JBHeaderScroll jbHeaderScroll = this.animHeaders[0];
+      SnapSpring spring = this.animSprings[0];
+      removeAnimation(0);
+      spring.stop();
+
+      if (moveToTarget)
+        jbHeaderScroll.applyAnimationFrame(spring.getTarget());
+
+      jbHeaderScroll.onHeaderAnimationEnd();
+    }
+  }
+
+
+  /**
+   * Removes the header at the given position from the animating headers by moving the last one into its place.
+   * The springs are swapped rather than overwritten so that each position keeps a spring of its own.
+   */
+  private void removeAnimation(int i)
+  {
+    int last = --this.animCount;
+    SnapSpring spring = this.animSprings[i];
+
+    this.animHeaders[i] = this.animHeaders[last];
+    this.animSprings[i] = this.animSprings[last];
+    this.animStartNanos[i] = this.animStartNanos[last];
+    this.animHeaders[last] = null;
+    this.animSprings[last] = spring;
+  }
+
+
+  private static float secondsSince(long startNanos, long nanos)
+  {
+    return Math.max(nanos - startNanos, 0) / 1000000000f;
+  }
+
+
+  /**
+   * Advances the spring of every animating header once per frame. Each header moves its own scrollers along with it.
+   */
+  private Choreographer.FrameCallback animFrameCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        int i = 0;
+
+        while (i < animCount)
+        {
+          JBHeaderScroll jbHeaderScroll = animHeaders[i];
+          SnapSpring spring = animSprings[i];
+
+          // A release that carries the spring away from its target mustn't move the header beyond its range.
+          float y = spring.getPosition(secondsSince(animStartNanos[i], frameTimeNanos));
+          jbHeaderScroll.applyAnimationFrame(Math.max(-jbHeaderScroll.getEngine().getHeaderHeight(), Math.min(y, 0)));
+
+          if (spring.isRunning())
+          {
+            i++;
+            continue;
+          }
+
+          removeAnimation(i);
+          jbHeaderScroll.onHeaderAnimationEnd();
+        }
+
+        if (animCount > 0)
+          choreographer.postFrameCallback(this);
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.content.Context;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * A FrameLayout that drives a JBHeaderScroll from nested scrolling instead of from raw motion events.
+ * <p/>
+ * Place the header and the scrollers inside this layout, register the scrollers with the JBHeaderScroll as usual
+ * and call setHeaderScroll. Scrollers that support nested scrolling (RecyclerView, NestedScrollView and, from
+ * API 21, any view with nested scrolling enabled) then report the distance they are about to scroll, and the
+ * header consumes as much of it as it can move before the content scrolls the rest. The header therefore only
+ * moves when the content actually scrolls: it isn't hidden when the content is at its end or too short to
+ * scroll. When the content is flung, the header follows the fling, moving by the distance the content covers
+ * each frame, until it is fully hidden or shown or the content can't scroll any further. It then snaps with the
+ * velocity the fling has left. The header follows a fling with the platform's default deceleration, which the
+ * content's own fling may differ from slightly.
+ * <p/>
+ * In this mode onRootDispatchTouchEventListener must not be called.
+ */
+public class JBHeaderScrollLayout extends FrameLayout implements NestedScrollingParent
+{
+  private final String LOG_TAG = "JBHeaderScrollLayout";
+
+  private final NestedScrollingParentHelper nestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+  private JBHeaderScroll jbHeaderScroll;
+  private boolean nestedScrollActive;
+
+
+  public JBHeaderScrollLayout(Context context)
+  {
+    super(context);
+  }
+
+  public JBHeaderScrollLayout(Context context, AttributeSet attrs)
+  {
+    super(context, attrs);
+  }
+
+  public JBHeaderScrollLayout(Context context, AttributeSet attrs, int defStyleAttr)
+  {
+    super(context, attrs, defStyleAttr);
+  }
+
+
+  /**
+   * Sets the JBHeaderScroll that receives the nested scrolls of the scrollers inside this layout.
+   */
+  public void setHeaderScroll(JBHeaderScroll jbHeaderScroll)
+  {
+    this.jbHeaderScroll = jbHeaderScroll;
+  }
+
+
+  @Override
+  public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes)
+  {
+    return (this.jbHeaderScroll != null) && ((nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0);
+  }
+
+
+  @Override
+  public void onNestedScrollAccepted(View child, View target, int nestedScrollAxes)
+  {
+    try
+    {
+      this.nestedScrollingParentHelper.onNestedScrollAccepted(child, target, nestedScrollAxes);
+      this.nestedScrollActive = this.jbHeaderScroll.startContentScroll(target);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onNestedScrollAccepted: " + ex.toString());
+    }
+  }
+
+
+  @Override
+  public void onNestedPreScroll(View target, int dx, int dy, int[] consumed)
+  {
+    try
+    {
+      if (this.nestedScrollActive)
+        consumed[1] = this.jbHeaderScroll.onNestedPreScroll(target, dy);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onNestedPreScroll: " + ex.toString());
+    }
+  }
+
+
+  @Override
+  public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed)
+  {
+  }
+
+
+  @Override
+  public boolean onNestedPreFling(View target, float velocityX, float velocityY)
+  {
+    if (this.nestedScrollActive)
+      this.jbHeaderScroll.onNestedPreFling(target, velocityY);
+
+    // The content always performs the fling itself. The header follows it once the nested scroll has stopped.
+    return false;
+  }
+
+
+  @Override
+  public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed)
+  {
+    return false;
+  }
+
+
+  @Override
+  public void onStopNestedScroll(View target)
+  {
+    try
+    {
+      this.nestedScrollingParentHelper.onStopNestedScroll(target);
+
+      if (this.nestedScrollActive)
+      {
+        this.nestedScrollActive = false;
+        this.jbHeaderScroll.stopContentScroll();
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onStopNestedScroll: " + ex.toString());
+    }
+  }
+
+
+  @Override
+  public int getNestedScrollAxes()
+  {
+    return this.nestedScrollingParentHelper.getNestedScrollAxes();
+  }
+}
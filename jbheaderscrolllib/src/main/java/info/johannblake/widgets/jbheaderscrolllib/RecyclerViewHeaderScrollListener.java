@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+/**
+ * Drives a JBHeaderScroll from the scroll offset of a RecyclerView.
+ * <p/>
+ * Register the RecyclerView with the JBHeaderScroll and add this listener with addOnScrollListener. Every
+ * distance the RecyclerView scrolls, whether it is dragged, flung or scrolled programmatically, moves the header
+ * by the same amount. Only the header moves: lay the RecyclerView out underneath the header with a top padding
+ * equal to the header's height and clipToPadding set to false, so that the header overlays the content. When the
+ * RecyclerView comes to rest, the header snaps fully into or out of view, and it is always shown once the
+ * content is back at its start.
+ * <p/>
+ * Each scroll callback does a constant amount of work, independent of the number of items in the list. In this
+ * mode onRootDispatchTouchEventListener doesn't need to be called.
+ */
+public class RecyclerViewHeaderScrollListener extends RecyclerView.OnScrollListener
+{
+  private final String LOG_TAG = "RecyclerViewHeaderScrollListener";
+
+  private final JBHeaderScroll jbHeaderScroll;
+  private boolean scrolling;
+
+
+  public RecyclerViewHeaderScrollListener(JBHeaderScroll jbHeaderScroll)
+  {
+    this.jbHeaderScroll = jbHeaderScroll;
+  }
+
+
+  @Override
+  public void onScrollStateChanged(RecyclerView recyclerView, int newState)
+  {
+    try
+    {
+      if (newState != RecyclerView.SCROLL_STATE_IDLE)
+      {
+        if (!this.scrolling)
+          this.scrolling = this.jbHeaderScroll.startContentScroll(recyclerView);
+      }
+      else if (this.scrolling)
+      {
+        stopScrolling(recyclerView);
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onScrollStateChanged: " + ex.toString());
+    }
+  }
+
+
+  @Override
+  public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+  {
+    try
+    {
+      if (dy == 0)
+        return;
+
+      if (!this.scrolling)
+        this.scrolling = this.jbHeaderScroll.startContentScroll(recyclerView);
+
+      if (!this.scrolling)
+        return;
+
+      this.jbHeaderScroll.onContentScrolled(dy);
+
+      // A programmatic scroll such as scrollBy doesn't change the scroll state, so it is finished right away.
+      if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE)
+        stopScrolling(recyclerView);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onScrolled: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Snaps the header once the RecyclerView has come to rest.
+   */
+  private void stopScrolling(RecyclerView recyclerView)
+  {
+    this.scrolling = false;
+    this.jbHeaderScroll.stopContentScroll();
+
+    // Nothing is scrolled behind the header at the start of the content, so it must be fully visible there.
+    if (!recyclerView.canScrollVertically(-1) && (this.jbHeaderScroll.getEngine().getHeaderY() < 0))
+      this.jbHeaderScroll.animateHeaderDown();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+/**
+ * A critically damped spring that moves the header to the edge it snaps to.
+ * <p/>
+ * The spring starts at the header's position with the velocity that the finger had when it was released. Its
+ * position is computed from the time elapsed since the start rather than being integrated frame by frame, so a
+ * dropped frame doesn't change the path of the header. The spring comes to rest sooner the shorter the distance
+ * is, and immediately once a fast release carries the header past its target. Being critically damped, it never
+ * oscillates around the target.
+ * <p/>
+ * Restarting the spring doesn't allocate, so a snap can be redirected or stopped at any time.
+ */
+class SnapSpring
+{
+  // The angular frequency of the spring in radians per second. A full header height of about 170 pixels
+  // snaps from rest in about 180 ms, a tenth of it in about 120 ms.
+  final static float FREQUENCY = 40;
+
+  // The spring is considered to be at rest once it is this many pixels from its target.
+  final static float REST_DISTANCE = 1;
+
+  private float target;
+  private float startOffset;
+  private float startVelocityTerm;
+  private boolean running;
+
+
+  /**
+   * Starts the spring.
+   *
+   * @param position  The current position.
+   * @param velocity  The current velocity in pixels per second.
+   * @param target    The position at which the spring comes to rest.
+   */
+  void start(float position, float velocity, float target)
+  {
+    this.target = target;
+    this.startOffset = position - target;
+    this.startVelocityTerm = velocity + (FREQUENCY * this.startOffset);
+    this.running = true;
+  }
+
+
+  /**
+   * Stops the spring where it is.
+   */
+  void stop()
+  {
+    this.running = false;
+  }
+
+
+  boolean isRunning()
+  {
+    return this.running;
+  }
+
+
+  float getTarget()
+  {
+    return this.target;
+  }
+
+
+  /**
+   * Returns the position of the spring the given number of seconds after it was started. Once the spring has
+   * reached its target, the target is returned and the spring stops running.
+   */
+  float getPosition(float seconds)
+  {
+    float offset = (this.startOffset + (this.startVelocityTerm * seconds)) * (float) Math.exp(-FREQUENCY * seconds);
+
+    if ((Math.abs(offset) < REST_DISTANCE) || ((offset * this.startOffset) < 0))
+    {
+      this.running = false;
+      return this.target;
+    }
+
+    return this.target + offset;
+  }
+
+
+  /**
+   * Returns the velocity of the spring in pixels per second the given number of seconds after it was started.
+   */
+  float getVelocity(float seconds)
+  {
+    float offset = this.startOffset + (this.startVelocityTerm * seconds);
+    return (this.startVelocityTerm - (FREQUENCY * offset)) * (float) Math.exp(-FREQUENCY * seconds);
+  }
+}
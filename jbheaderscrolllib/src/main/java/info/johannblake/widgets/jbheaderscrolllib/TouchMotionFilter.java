@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+/**
+ * Turns the positions of a finger into the distances that move the header, leaving out the jitter of a finger
+ * that is held still or moved very slowly.
+ * <p/>
+ * Nothing is reported until the finger has moved further than the touch slop from where it went down. After
+ * that, the finger's direction only changes once it has moved back by more than half the touch slop from the
+ * furthest point it reached. Until then the moves are reported as zero, so jitter neither repositions the
+ * scrollers nor changes the direction that decides which way the header snaps. The slop is subtracted from the
+ * distance once it has been exceeded, so the header doesn't jump when it starts following the finger.
+ */
+class TouchMotionFilter
+{
+  private float touchSlop;
+
+  // Where the finger went down until it has exceeded the touch slop, then the furthest point it has reached in
+  // its current direction.
+  private float prevY;
+  private boolean dragging;
+  private boolean movingUp;
+
+
+  /**
+   * Sets the distance in pixels that the finger has to move before it is considered to be scrolling. Zero
+   * reports every move.
+   */
+  void setTouchSlop(float touchSlop)
+  {
+    this.touchSlop = touchSlop;
+  }
+
+
+  /**
+   * Starts a gesture at y.
+   */
+  void onTouchDown(float y)
+  {
+    this.prevY = y;
+    this.dragging = false;
+  }
+
+
+  /**
+   * Returns the signed distance that the finger has moved to y, or zero if the move is within the slop.
+   */
+  float onTouchMove(float y)
+  {
+    float delta = y - this.prevY;
+
+    if (!this.dragging)
+    {
+      if (Math.abs(delta) <= this.touchSlop)
+        return 0;
+
+      this.dragging = true;
+      return startMoving(y, delta, this.touchSlop);
+    }
+
+    if ((delta != 0) && ((delta < 0) != this.movingUp))
+    {
+      float reverseSlop = this.touchSlop / 2;
+
+      if (Math.abs(delta) <= reverseSlop)
+        return 0;
+
+      return startMoving(y, delta, reverseSlop);
+    }
+
+    this.prevY = y;
+    return delta;
+  }
+
+
+  private float startMoving(float y, float delta, float slop)
+  {
+    this.movingUp = delta < 0;
+    this.prevY = y;
+    return this.movingUp ? delta + slop : delta - slop;
+  }
+}
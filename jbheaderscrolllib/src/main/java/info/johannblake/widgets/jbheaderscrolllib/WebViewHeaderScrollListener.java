@@ -0,0 +1,387 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbheaderscrolllib;
+
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.webkit.WebView;
+
+/**
+ * Drives a JBHeaderScroll from the scroll position of a WebView without resizing the WebView while the header moves.
+ * <p/>
+ * Every change to the size of a WebView makes it relayout and re-raster the page, so the WebView is only translated
+ * while the header is dragged, flung or snapped. Once the header has come to rest, the WebView's height is changed
+ * at most once, and only if it has to be: when the header is visible at the end of the page, the WebView is shortened
+ * so that the end of the page can be scrolled into view. Otherwise it keeps filling its parent.
+ * <p/>
+ * Lay the WebView out with its top edge aligned to the top edge of the header, a height of MATCH_PARENT and placed
+ * before the header so that the header is drawn over it. Set the JBHeaderScroll's reposition mode to
+ * REPOSITION_MODE_TRANSLATION, register the WebView and call attach before the header is first laid out. JBHeaderScroll
+ * then moves the WebView below the header.
+ * <p/>
+ * While the finger is down, the header follows the finger. Since the WebView moves along with the header, it doesn't
+ * scroll until the header is fully hidden or visible. After the finger has been released, and for scrolls that
+ * aren't caused by touch, the header is moved by the distance reported by onScrollChanged until the WebView has
+ * come to rest. The header then snaps and the WebView follows it. The header is only hidden while the page can
+ * still scroll up. In this mode onRootDispatchTouchEventListener must not be called for motion events on the WebView.
+ */
+public class WebViewHeaderScrollListener implements View.OnTouchListener, ViewTreeObserver.OnScrollChangedListener
+{
+  private final String LOG_TAG = "WebViewHeaderScrollListener";
+
+  private final static int STATE_IDLE = 0;
+  private final static int STATE_DRAGGING = 1;
+  private final static int STATE_SETTLING = 2;
+  private final static int STATE_SNAPPING = 3;
+
+  // The number of frames without a change in the scroll position after which the WebView is considered at rest.
+  private final static int SETTLE_FRAMES = 2;
+
+  private final JBHeaderScroll jbHeaderScroll;
+  private final WebView webView;
+  private final Choreographer choreographer;
+  private final int maxFlingVelocity;
+
+  private int state = STATE_IDLE;
+  private boolean frameCallbackPosted;
+  private int lastScrollY;
+  private int frameScrollY;
+  private int stillFrames;
+  private final TouchMotionFilter touchMotionFilter = new TouchMotionFilter();
+  private VelocityTracker velocityTracker;
+  private float releaseVelocityY;
+  private boolean scrolledSinceRelease;
+
+
+  public WebViewHeaderScrollListener(JBHeaderScroll jbHeaderScroll, WebView webView)
+  {
+    this.jbHeaderScroll = jbHeaderScroll;
+    this.webView = webView;
+    this.choreographer = Choreographer.getInstance();
+
+    ViewConfiguration viewConfiguration = ViewConfiguration.get(webView.getContext());
+    this.maxFlingVelocity = viewConfiguration.getScaledMaximumFlingVelocity();
+    this.touchMotionFilter.setTouchSlop(viewConfiguration.getScaledTouchSlop());
+  }
+
+
+  /**
+   * Starts listening to the WebView's touch events and scroll position. The WebView's OnTouchListener is replaced.
+   */
+  public void attach()
+  {
+    try
+    {
+      this.lastScrollY = this.webView.getScrollY();
+      this.webView.setOnTouchListener(this);
+      this.webView.getViewTreeObserver().addOnScrollChangedListener(this);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "attach: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Stops listening to the WebView. The header and WebView are left where they are.
+   */
+  public void detach()
+  {
+    try
+    {
+      this.webView.setOnTouchListener(null);
+      this.webView.getViewTreeObserver().removeOnScrollChangedListener(this);
+
+      if (this.frameCallbackPosted)
+      {
+        this.choreographer.removeFrameCallback(this.frameCallback);
+        this.frameCallbackPosted = false;
+      }
+
+      if (this.velocityTracker != null)
+      {
+        this.velocityTracker.recycle();
+        this.velocityTracker = null;
+      }
+
+      this.state = STATE_IDLE;
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "detach: " + ex.toString());
+    }
+  }
+
+
+  @Override
+  public boolean onTouch(View v, MotionEvent event)
+  {
+    try
+    {
+      switch (event.getActionMasked())
+      {
+        case MotionEvent.ACTION_DOWN:
+          if (!this.jbHeaderScroll.startContentScroll(this.webView))
+            break;
+
+          this.state = STATE_DRAGGING;
+          this.touchMotionFilter.onTouchDown(event.getRawY());
+
+          if (this.velocityTracker == null)
+            this.velocityTracker = VelocityTracker.obtain();
+          else
+            this.velocityTracker.clear();
+
+          addMovement(event);
+          break;
+
+        case MotionEvent.ACTION_MOVE:
+          if (this.state != STATE_DRAGGING)
+            break;
+
+          addMovement(event);
+
+          // The WebView is translated along with the header, so the event's own coordinates shift with it. The
+          // screen coordinates don't.
+          float delta = this.touchMotionFilter.onTouchMove(event.getRawY());
+
+          if ((delta == 0) || ((delta < 0) && !canHideHeader()))
+            break;
+
+          this.jbHeaderScroll.applyMotion(delta);
+          break;
+
+        case MotionEvent.ACTION_UP:
+        case MotionEvent.ACTION_CANCEL:
+          if (this.state != STATE_DRAGGING)
+            break;
+
+          addMovement(event);
+          this.velocityTracker.computeCurrentVelocity(1000, this.maxFlingVelocity);
+          this.releaseVelocityY = this.velocityTracker.getYVelocity();
+          this.velocityTracker.recycle();
+          this.velocityTracker = null;
+
+          startSettling();
+          break;
+      }
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onTouch: " + ex.toString());
+    }
+
+    // The WebView always handles the event itself.
+    return false;
+  }
+
+
+  @Override
+  public void onScrollChanged()
+  {
+    try
+    {
+      // Any view in the window that scrolls ends up here.
+      int scrollY = this.webView.getScrollY();
+      int dy = scrollY - this.lastScrollY;
+      this.lastScrollY = scrollY;
+
+      if ((dy == 0) || (this.state == STATE_DRAGGING) || (this.state == STATE_SNAPPING))
+        return;
+
+      if (this.state == STATE_IDLE)
+      {
+        // A scroll that wasn't started by touch, such as following a link to an anchor.
+        if (this.jbHeaderScroll.getEngine().isHeaderAnimating() || !this.jbHeaderScroll.startContentScroll(this.webView))
+          return;
+
+        this.releaseVelocityY = 0;
+        startSettling();
+      }
+
+      this.scrolledSinceRelease = true;
+
+      if ((dy > 0) && !canHideHeader())
+        return;
+
+      this.jbHeaderScroll.applyMotion(-dy);
+    }
+    catch (Exception ex)
+    {
+      Log.e(LOG_TAG, "onScrollChanged: " + ex.toString());
+    }
+  }
+
+
+  /**
+   * Waits for the WebView to come to rest before the header snaps.
+   */
+  private void startSettling()
+  {
+    this.state = STATE_SETTLING;
+    this.scrolledSinceRelease = false;
+    this.frameScrollY = this.webView.getScrollY();
+    this.stillFrames = 0;
+    postFrameCallback();
+  }
+
+
+  private void postFrameCallback()
+  {
+    if (this.frameCallbackPosted)
+      return;
+
+    this.frameCallbackPosted = true;
+    this.choreographer.postFrameCallback(this.frameCallback);
+  }
+
+
+  private Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback()
+  {
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+      try
+      {
+        frameCallbackPosted = false;
+
+        HeaderScrollEngine engine = jbHeaderScroll.getEngine();
+
+        if (state == STATE_SETTLING)
+        {
+          int scrollY = webView.getScrollY();
+
+          if (scrollY != frameScrollY)
+          {
+            frameScrollY = scrollY;
+            stillFrames = 0;
+          }
+          else if (++stillFrames >= SETTLE_FRAMES)
+          {
+            snapHeader();
+          }
+        }
+
+        if ((state == STATE_SNAPPING) && !engine.isHeaderAnimating())
+        {
+          commitSize();
+          state = STATE_IDLE;
+        }
+
+        if ((state == STATE_SETTLING) || (state == STATE_SNAPPING))
+          postFrameCallback();
+      }
+      catch (Exception ex)
+      {
+        Log.e(LOG_TAG, "doFrame: " + ex.toString());
+      }
+    }
+  };
+
+
+  /**
+   * Snaps the header fully into or out of view once the WebView has come to rest.
+   */
+  private void snapHeader()
+  {
+    this.state = STATE_SNAPPING;
+
+    // A fling has already been applied to the header by the time the WebView comes to rest.
+    if (!this.jbHeaderScroll.getEngine().isFingerUp())
+      this.jbHeaderScroll.touchUp(this.scrolledSinceRelease ? 0 : this.releaseVelocityY);
+
+    // Nothing is scrolled behind the header at the top of the page, so it must be fully visible there.
+    if (!this.webView.canScrollVertically(-1) && (this.jbHeaderScroll.getEngine().getHeaderY() < 0))
+      this.jbHeaderScroll.animateHeaderDown();
+  }
+
+
+  /**
+   * Changes the WebView's height once the header is at rest, if it needs to change. The WebView fills its parent
+   * unless the header is visible at the end of the page, where it is shortened so that it ends at the bottom of
+   * its parent instead of below it.
+   */
+  private void commitSize()
+  {
+    ViewParent parent = this.webView.getParent();
+
+    if (!(parent instanceof View))
+      return;
+
+    int height = ViewGroup.LayoutParams.MATCH_PARENT;
+
+    if (!this.webView.canScrollVertically(1))
+      height = (int) (((View) parent).getHeight() - this.webView.getY());
+
+    ViewGroup.LayoutParams layoutParams = this.webView.getLayoutParams();
+
+    if (layoutParams.height == height)
+      return;
+
+    layoutParams.height = height;
+    this.webView.setLayoutParams(layoutParams);
+
+    // The clipping set while the WebView was translated refers to its previous height.
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+      this.webView.setClipBounds(null);
+  }
+
+
+  /**
+   * The header may only be hidden while the page can scroll up and the WebView is tall enough to fill its parent
+   * once the header is hidden.
+   */
+  private boolean canHideHeader()
+  {
+    return this.webView.canScrollVertically(1) && (this.webView.getLayoutParams().height == ViewGroup.LayoutParams.MATCH_PARENT);
+  }
+
+
+  /**
+   * Adds the event to the velocity tracker in screen coordinates, which unlike the event's own coordinates don't
+   * shift while the WebView is translated.
+   */
+  private void addMovement(MotionEvent event)
+  {
+    float offsetX = event.getRawX() - event.getX();
+    float offsetY = event.getRawY() - event.getY();
+
+    event.offsetLocation(offsetX, offsetY);
+    this.velocityTracker.addMovement(event);
+    event.offsetLocation(-offsetX, -offsetY);
+  }
+}